@@ -0,0 +1,8 @@
+@echo off
+REM ==== Run TicTacToe JMH microbenchmarks (needs Maven on the PATH) ====
+REM Arguments go to JMH, e.g.  bench.bat EngineBenchmarks -prof gc   or   bench.bat -rf csv -rff results.csv
+
+cd /d "%~dp0"
+call mvn -B -q -Pjmh verify "-Djmh.args=%*"
+
+pause
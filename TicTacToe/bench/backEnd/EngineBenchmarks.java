@@ -0,0 +1,94 @@
+package backEnd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine hot paths: a full game of player + CPU moves on each engine, win detection
+ * (through placeSymbol, which runs checkWinner) and the CPU levels on their own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmarks {
+    // fixed player move sequence so every run does the same work
+    private static final int[] PLAYER_MOVES = new int[4096];
+    static {
+        Random r = new Random(42);
+        for (int i = 0; i < PLAYER_MOVES.length; i++) PLAYER_MOVES[i] = r.nextInt(9);
+    }
+
+    private TicTacToeBackend legacy, wins;
+    private BitBoardEngine bits, perfect, winBits;
+    private GridEngine grid, gomoku;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        CpuPlayer.warmUp();
+        legacy = new TicTacToeBackend();
+        bits = new BitBoardEngine();
+        perfect = new BitBoardEngine();
+        perfect.setDifficulty(Difficulty.PERFECT);
+        grid = new GridEngine(3, 3);
+        wins = new TicTacToeBackend();
+        winBits = new BitBoardEngine();
+        gomoku = new GridEngine(15, 5);
+        gomoku.setDifficulty(Difficulty.GREEDY);
+    }
+
+    @Benchmark
+    public long legacyGameRandomCpu() { return playGame(legacy, i++); }
+
+    @Benchmark
+    public long bitBoardGameRandomCpu() { return playGame(bits, i++); }
+
+    @Benchmark
+    public long bitBoardGamePerfectCpu() { return playGame(perfect, i++); }
+
+    @Benchmark
+    public long grid3x3GameRandomCpu() { return playGame(grid, i++); }
+
+    // checkWinner: fill the board X,O alternately, every placement runs a win check
+    @Benchmark
+    public long legacyPlaceSymbolCheckWinner() { return fill(wins, i++); }
+
+    @Benchmark
+    public long bitBoardPlaceSymbolCheckWinner() { return fill(winBits, i++); }
+
+    @Benchmark
+    public char grid15x15GreedyComputerMove() {
+        if (gomoku.isGameOver() || (i++ & 31) == 0) gomoku.reset();
+        gomoku.computerMove();
+        return gomoku.getWinner();
+    }
+
+    private static long playGame(GameEngine e, int i) {
+        e.reset();
+        int k = i & 1023;
+        while (!e.isGameOver()) {
+            if (e.playerMove(PLAYER_MOVES[k++ & 4095]) && !e.isGameOver()) e.computerMove();
+        }
+        return e.getWinner();
+    }
+
+    private static long fill(GameEngine e, int i) {
+        e.reset();
+        for (int p = 0; p < 9 && !e.isGameOver(); p++) e.placeSymbol((p + i) % 9, (p & 1) == 0 ? 'X' : 'O');
+        return e.getWinner();
+    }
+}
@@ -0,0 +1,89 @@
+package loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (same idea as HdrHistogram):
+ * values below 256 ns are exact, above that every power of two is split into 128
+ * sub-buckets, so any recorded value is reported within 1% of its true value.
+ * Safe to record into from many threads at once.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;              // 128
+    private static final int LINEAR = SUB_COUNT << 1;                 // values < 256 are exact
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    /** Record one successful call that took nanos. */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        total.increment();
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) { }
+    }
+
+    /** Count a failed call (exception, timeout or non-2xx); it is not part of the latencies. */
+    public void error() { errors.increment(); }
+
+    public long getCount() { return total.sum(); }
+
+    public long getErrors() { return errors.sum(); }
+
+    public long getMax() { return max.get(); }
+
+    /** Latency at the given percentile (0..100), in nanos; 0 if nothing was recorded. */
+    public long percentile(double p) {
+        long n = getCount();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestEquivalent(i), getMax());
+        }
+        return getMax();
+    }
+
+    /** One table row: calls, calls/s, errors and p50/p99/p99.9/max in milliseconds. */
+    public String summary(double seconds) {
+        return String.format("%-12s %10d %10.1f %8d %9.3f %9.3f %9.3f %9.3f",
+                name, getCount(), getCount() / seconds, getErrors(),
+                millis(percentile(50)), millis(percentile(99)), millis(percentile(99.9)), millis(getMax()));
+    }
+
+    public static String header() {
+        return String.format("%-12s %10s %10s %8s %9s %9s %9s %9s",
+                "endpoint", "calls", "calls/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    private static double millis(long nanos) { return nanos / 1e6; }
+
+    private static int index(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;   // >= 1
+        return (shift << SUB_BITS) + (int) (v >>> shift);          // (v >>> shift) is in [128, 256)
+    }
+
+    // largest value that lands in bucket i
+    private static long highestEquivalent(int i) {
+        if (i < LINEAR) return i;
+        int shift = (i >>> SUB_BITS) - 1;
+        long sub = i - ((long) shift << SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs N simulated players side by side until a deadline, then prints a per-endpoint
+ * latency table. Players get a virtual thread each when the JDK has them (21+),
+ * otherwise a platform thread each. Starts are spread over -Dload.rampMillis (default 1000)
+ * so the run measures steady load rather than one burst of connects.
+ */
+public final class LoadRun {
+
+    /** One simulated player: play full games until deadlineNanos, return how many were finished. */
+    public interface Player {
+        long play(int id, long deadlineNanos) throws Exception;
+    }
+
+    private static final long RAMP_MILLIS = Long.getLong("load.rampMillis", 1000);
+
+    private LoadRun() { }
+
+    public static void run(String title, int players, long seconds, Player player,
+                           LatencyHistogram... endpoints) throws InterruptedException {
+        ThreadFactory threads = playerThreads();
+        LongAdder games = new LongAdder();
+        LongAdder crashed = new LongAdder();
+        AtomicBoolean reported = new AtomicBoolean();
+
+        System.out.println("== " + title + ": " + players + " players for " + seconds + " s ==");
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        List<Thread> running = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            int id = i;
+            Thread t = threads.newThread(() -> {
+                try {
+                    games.add(player.play(id, deadline));
+                } catch (Exception e) {
+                    crashed.increment();
+                    if (reported.compareAndSet(false, true)) e.printStackTrace(); // first one is enough
+                }
+            });
+            running.add(t);
+            t.start();
+            long due = start + RAMP_MILLIS * 1_000_000L * (i + 1) / players;
+            long wait = due - System.nanoTime();
+            if (wait > 0) Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+        }
+        for (Thread t : running) t.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(LatencyHistogram.header());
+        for (LatencyHistogram h : endpoints) System.out.println(h.summary(elapsed));
+        System.out.printf("games finished: %d (%.1f/s), players crashed: %d, elapsed %.1f s%n%n",
+                games.sum(), games.sum() / elapsed, crashed.sum(), elapsed);
+    }
+
+    // Thread.ofVirtual().factory() when the running JDK has it, plain daemon threads otherwise
+    private static ThreadFactory playerThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads not available on this JDK, using one platform thread per player");
+            return r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+}
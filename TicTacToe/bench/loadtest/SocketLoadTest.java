@@ -0,0 +1,135 @@
+package loadtest;
+
+import network.Server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test for network.Server: every simulated player keeps one socket open and plays
+ * 3x3 games against the CPU with the text protocol (NEW:3,3 then MOVE:n until a winner).
+ * Starts the server in-process unless -Dload.host points at a running one.
+ *   -Dload.players=1000 -Dload.seconds=30 -Dload.port=5000 -Dload.level=random
+ *   -Dload.mode=threads|virtual|nio (in-process server transport)
+ */
+public class SocketLoadTest {
+    private static final int PLAYERS = Integer.getInteger("load.players", 1000);
+    private static final long SECONDS = Long.getLong("load.seconds", 30);
+    private static final int PORT = Integer.getInteger("load.port", 5000);
+    private static final String LEVEL = System.getProperty("load.level", "random");
+
+    private static final LatencyHistogram connect = new LatencyHistogram("connect");
+    private static final LatencyHistogram newGame = new LatencyHistogram("NEW");
+    private static final LatencyHistogram move = new LatencyHistogram("MOVE");
+
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("load.host");
+        Path dir = null;
+        if (host == null) {
+            host = "localhost";
+            String mode = System.getProperty("load.mode", "threads");
+            dir = Files.createTempDirectory("ttt-load");
+            String dbPath = dir.resolve("load.db").toString();
+            Thread server = new Thread(() -> {
+                try {
+                    Server.serve(PORT, mode, dbPath);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "InProcessServer");
+            server.setDaemon(true);
+            server.start();
+            waitForPort(host, PORT);
+        }
+
+        String target = host;
+        try {
+            LoadRun.run("socket server " + target + ":" + PORT, PLAYERS, SECONDS,
+                    (id, deadline) -> play(target, deadline), connect, newGame, move);
+        } finally {
+            if (dir != null) {
+                for (String suffix : new String[]{"", "-wal", "-shm"}) Files.deleteIfExists(dir.resolve("load.db" + suffix));
+                Files.deleteIfExists(dir);
+            }
+        }
+        System.exit(0); // the in-process server (and its metrics endpoint) would keep the JVM alive
+    }
+
+    private static long play(String host, long deadline) throws IOException {
+        long games = 0;
+        while (System.nanoTime() < deadline) {
+            long t0 = System.nanoTime();
+            boolean connected = false;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, PORT), 10_000);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(10_000);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+                if (in.readLine() == null) throw new IOException("closed before the first board");
+                connect.record(System.nanoTime() - t0);
+                connected = true;
+
+                request(in, out, "LEVEL:" + LEVEL, null);
+                while (System.nanoTime() < deadline) {
+                    String state = request(in, out, "NEW:3,3", newGame);
+                    while (winner(state) == ' ' && System.nanoTime() < deadline) {
+                        state = request(in, out, "MOVE:" + randomEmptyCell(state), move);
+                    }
+                    if (winner(state) != ' ') games++;
+                }
+            } catch (IOException e) {
+                // refused, timed out or dropped: count it against the step that failed and reconnect
+                if (!connected) connect.error();
+            }
+        }
+        return games;
+    }
+
+    // send one command line and wait for the "board,winner" reply
+    private static String request(BufferedReader in, OutputStream out, String cmd, LatencyHistogram h) throws IOException {
+        long t0 = System.nanoTime();
+        String reply;
+        try {
+            out.write((cmd + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            reply = in.readLine();
+            if (reply == null || reply.length() < 2) throw new IOException("connection closed");
+        } catch (IOException e) {
+            if (h != null) h.error();
+            throw e;
+        }
+        if (h != null) h.record(System.nanoTime() - t0);
+        return reply;
+    }
+
+    private static char winner(String state) { return state.charAt(state.length() - 1); }
+
+    private static int randomEmptyCell(String state) {
+        int cells = state.length() - 2, pick = -1, seen = 0;
+        for (int i = 0; i < cells; i++) {
+            if (state.charAt(i) == '-' && ThreadLocalRandom.current().nextInt(++seen) == 0) pick = i;
+        }
+        return pick;
+    }
+
+    private static void waitForPort(String host, int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try {
+                new Socket(host, port).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("server did not start on port " + port);
+    }
+}
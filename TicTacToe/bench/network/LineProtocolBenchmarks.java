@@ -0,0 +1,77 @@
+package network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClientHandler protocol cost without sockets: bytes of a MOVE / NEW command are fed
+ * through GameProtocol and the reply is handed to a Connection that only counts it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineProtocolBenchmarks {
+
+    private static final class CountingConnection implements Connection {
+        long bytes;
+        @Override public void send(String line) { bytes += line.length() + 1; }
+        @Override public void send(byte[] frame) { bytes += frame.length; }
+        @Override public boolean sendLatest(byte[] frame) { bytes += frame.length; return false; }
+        @Override public void close() { }
+    }
+
+    private final byte[][] moves = new byte[9][];
+    private final byte[] restart = "NEW:3,3\n".getBytes(StandardCharsets.US_ASCII);
+    private final byte[][] binMoves = new byte[9][];
+    private final byte[] binRestart = BinaryProtocol.newGame(3, 3);
+    private CountingConnection text, bin;
+    private GameProtocol textProtocol, binProtocol;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        for (int m = 0; m < 9; m++) {
+            moves[m] = ("MOVE:" + m + "\n").getBytes(StandardCharsets.US_ASCII);
+            binMoves[m] = BinaryProtocol.move(m);
+        }
+        text = new CountingConnection();
+        textProtocol = new GameProtocol(text);
+        bin = new CountingConnection();
+        binProtocol = new GameProtocol(bin);
+        feed(binProtocol, (BinaryProtocol.HELLO + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** text MOVE line -> board line, a NEW every fifth command */
+    @Benchmark
+    public long textMove() {
+        int n = i++;
+        feed(textProtocol, (n % 5) == 0 ? restart : moves[n % 9]);
+        return text.bytes;
+    }
+
+    /** binary MOVE -> board frame, a NEW every fifth command */
+    @Benchmark
+    public long binaryMove() {
+        int n = i++;
+        feed(binProtocol, (n % 5) == 0 ? binRestart : binMoves[n % 9]);
+        return bin.bytes;
+    }
+
+    private static void feed(GameProtocol p, byte[] bytes) {
+        for (byte b : bytes) p.onByte(b & 0xFF);
+    }
+}
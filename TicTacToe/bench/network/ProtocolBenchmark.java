@@ -0,0 +1,56 @@
+package network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the text "board,winner" line with the binary board frame: encode + decode per message.
+ * Message sizes, text vs binary: 3x3 12 B vs 4 B, 7x7 52 B vs 14 B, 15x15 228 B vs 58 B.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+    @Param({"3", "7", "15"})
+    public int n;
+
+    private char[] board;
+    private int seq;
+
+    @Setup
+    public void setUp() {
+        board = new char[n * n];
+        for (int i = 0; i < board.length; i++) board[i] = i % 3 == 0 ? 'X' : i % 3 == 1 ? 'O' : '-';
+    }
+
+    // what ClientHandler + Client did: build the line, split and copy it back
+    @Benchmark
+    public int textRoundTrip() {
+        String msg = new String(board) + "," + 'X';
+        String[] parts = msg.split(",");
+        char[] decoded = parts[0].toCharArray();
+        return decoded.length + parts[1].charAt(0);
+    }
+
+    @Benchmark
+    public int binaryRoundTrip() {
+        byte[] frame = BinaryProtocol.encodeBoard(board, n, 'X', seq++);
+        char[] decoded = new char[n * n];
+        BinaryProtocol.decodeCells(frame, decoded);
+        return decoded.length + BinaryProtocol.winner(frame);
+    }
+}
@@ -0,0 +1,27 @@
+@echo off
+REM ==== Load test the socket game server (in-process, port 5000) ====
+REM Extra JVM flags are passed through, e.g.  loadtest.bat -Dload.players=2000 -Dload.seconds=60 -Dload.mode=nio
+
+REM Path to JDK 17
+set JAVA_HOME=C:\Program Files\Java\jdk-17
+
+REM Sources and output
+set SRC_DIR=C:\Games\TicTacToe\src
+set BENCH_DIR=C:\Games\TicTacToe\bench
+set OUT_DIR=C:\Games\TicTacToe\out\loadtest
+
+if exist "%OUT_DIR%" rmdir /s /q "%OUT_DIR%"
+mkdir "%OUT_DIR%"
+
+echo Compiling backend, network and load test...
+dir /S /B "%SRC_DIR%\backEnd\*.java" "%SRC_DIR%\network\*.java" "%SRC_DIR%\metrics\*.java" "%BENCH_DIR%\loadtest\*.java" > "%OUT_DIR%\sources.txt"
+"%JAVA_HOME%\bin\javac.exe" -d "%OUT_DIR%" @"%OUT_DIR%\sources.txt"
+if errorlevel 1 (
+    echo Compilation FAILED!
+    pause
+    exit /b
+)
+
+"%JAVA_HOME%\bin\java.exe" %* -cp "%OUT_DIR%" loadtest.SocketLoadTest
+
+pause
@@ -1,24 +1,170 @@
 package DB;
 
+import metrics.Metrics;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * SQLite access for players / wins, ratings and the history of finished games.
+ * Handler threads borrow a connection from a small bounded pool; every pooled
+ * connection caches its PreparedStatements, and SQLite is opened in WAL mode
+ * with synchronous=NORMAL and a busy timeout so readers and writers don't block each other.
+ */
 public class DatabaseHandler {
-    private final Connection conn;
+    private static final int DEFAULT_POOL_SIZE = Integer.getInteger("ttt.db.pool", 4);
+    private static final long BORROW_TIMEOUT_MILLIS = 10_000;
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+
+    // time per call as the caller sees it, waiting for a pooled connection included
+    private static final String DB_SECONDS = "ttt_db_call_duration_seconds";
+    private static final String DB_HELP = "DatabaseHandler call latency including connection wait";
+    private static final Metrics.Histogram ADD_WIN = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "addWin");
+    private static final Metrics.Histogram ADD_WINS = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "addWins");
+    private static final Metrics.Histogram LOAD_SCORES = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "loadScores");
+    private static final Metrics.Histogram LEADERBOARD = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "getLeaderboard");
+    private static final Metrics.Histogram LEADERBOARD_PAGE = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "getLeaderboardPage");
+    private static final Metrics.Histogram RANK = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "getRank");
+    private static final Metrics.Histogram ADD_GAMES = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "addGames");
+    private static final Metrics.Histogram PLAYER_STATS = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "getPlayerStats");
+    private static final Metrics.Histogram OPENINGS = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "getOpenings");
+    private static final Metrics.Histogram LOAD_RATINGS = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "loadRatings");
+    private static final Metrics.Histogram SAVE_RATINGS = Metrics.histogram(DB_SECONDS, DB_HELP, "call", "saveRatings");
+    private static final Metrics.Counter ERRORS = Metrics.counter("ttt_db_errors_total", "DatabaseHandler calls that threw SQLException");
+
+    /** One JDBC connection plus its prepared statements (keyed by SQL text). */
+    private static final class PooledConnection {
+        final Connection conn;
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection conn) { this.conn = conn; }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+    }
+
+    private interface SqlWork<T> {
+        T run(PooledConnection c) throws SQLException;
+    }
+
+    private final BlockingQueue<PooledConnection> pool;
+    private final List<PooledConnection> all = new ArrayList<>();
 
     public DatabaseHandler(String filePath) throws SQLException {
+        this(filePath, DEFAULT_POOL_SIZE);
+    }
+
+    public DatabaseHandler(String filePath, int poolSize) throws SQLException {
         String url = "jdbc:sqlite:" + filePath;
-        conn = DriverManager.getConnection(url);
-        ensureTable();
+        pool = new ArrayBlockingQueue<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                Connection conn = DriverManager.getConnection(url);
+                try (Statement st = conn.createStatement()) {
+                    if (i == 0) st.execute("PRAGMA journal_mode=WAL"); // persistent, once per file is enough
+                    st.execute("PRAGMA synchronous=NORMAL");
+                    st.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+                }
+                PooledConnection pc = new PooledConnection(conn);
+                all.add(pc);
+                if (i == 0) ensureTable(conn);
+                pool.add(pc);
+            }
+        } catch (SQLException e) {
+            try { close(); } catch (SQLException ignored) { }
+            throw e;
+        }
     }
 
-    private void ensureTable() throws SQLException {
+    private void ensureTable(Connection conn) throws SQLException {
         String sql = "CREATE TABLE IF NOT EXISTS players ("
                 + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + "username TEXT UNIQUE, "
                 + "wins INTEGER DEFAULT 0)";
         try (Statement st = conn.createStatement()) { st.execute(sql); }
+        migrate(conn);
+    }
+
+    // schema upgrades, tracked in SQLite's user_version
+    private void migrate(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            int version;
+            try (ResultSet rs = st.executeQuery("PRAGMA user_version")) { version = rs.next() ? rs.getInt(1) : 0; }
+            if (version < 1) {
+                // v1: leaderboard pages / rank lookups walk this index instead of sorting the table
+                st.execute("CREATE INDEX IF NOT EXISTS idx_players_wins_username ON players(wins DESC, username)");
+                st.execute("PRAGMA user_version = 1");
+            }
+            if (version < 2) {
+                // v2: one row per finished game (moves packed 2 bytes per cell, see GameRecord)
+                st.execute("CREATE TABLE IF NOT EXISTS games ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + "player_x TEXT NOT NULL, "
+                        + "player_o TEXT NOT NULL, "
+                        + "winner TEXT NOT NULL, "
+                        + "size INTEGER NOT NULL, "
+                        + "k INTEGER NOT NULL, "
+                        + "seed INTEGER, "
+                        + "moves BLOB NOT NULL, "
+                        + "opening INTEGER NOT NULL, "
+                        + "started_at INTEGER NOT NULL, "
+                        + "duration_ms INTEGER NOT NULL)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_games_player_x ON games(player_x)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_games_player_o ON games(player_o)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_games_opening ON games(size, opening)");
+                st.execute("PRAGMA user_version = 2");
+            }
+            if (version < 3) {
+                // v3: Elo ratings, ranked in memory by RatingService (no rating index needed)
+                st.execute("CREATE TABLE IF NOT EXISTS ratings ("
+                        + "username TEXT PRIMARY KEY, "
+                        + "rating REAL NOT NULL, "
+                        + "games INTEGER NOT NULL DEFAULT 0, "
+                        + "wins INTEGER NOT NULL DEFAULT 0, "
+                        + "losses INTEGER NOT NULL DEFAULT 0, "
+                        + "draws INTEGER NOT NULL DEFAULT 0)");
+                st.execute("PRAGMA user_version = 3");
+            }
+        }
+    }
+
+    // borrow a connection, run the work, give it back (a broken connection is still returned: SQLite recovers)
+    private <T> T withConnection(Metrics.Histogram timer, SqlWork<T> work) throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection c;
+        try {
+            c = pool.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+        if (c == null) {
+            ERRORS.inc();
+            throw new SQLException("No DB connection available after " + BORROW_TIMEOUT_MILLIS + " ms");
+        }
+        try {
+            return work.run(c);
+        } catch (SQLException e) {
+            ERRORS.inc();
+            throw e;
+        } finally {
+            pool.offer(c);
+            timer.observeSince(start);
+        }
     }
 
     // increment wins (insert new user or update)
@@ -26,21 +172,231 @@ public class DatabaseHandler {
         // Uses SQLite "ON CONFLICT" compact form:
         String sql = "INSERT INTO players(username, wins) VALUES (?, 1) "
                 + "ON CONFLICT(username) DO UPDATE SET wins = wins + 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        withConnection(ADD_WIN, c -> {
+            PreparedStatement ps = c.prepare(sql);
             ps.setString(1, username);
-            ps.executeUpdate();
-        }
+            return ps.executeUpdate();
+        });
+    }
+
+    // add several players' wins in one transaction (used by LeaderboardService flushes)
+    public void addWins(Map<String, Integer> wins) throws SQLException {
+        String sql = "INSERT INTO players(username, wins) VALUES (?, ?) "
+                + "ON CONFLICT(username) DO UPDATE SET wins = wins + excluded.wins";
+        withConnection(ADD_WINS, c -> {
+            c.conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = c.prepare(sql);
+                for (Map.Entry<String, Integer> e : wins.entrySet()) {
+                    ps.setString(1, e.getKey());
+                    ps.setInt(2, e.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.conn.commit();
+            } catch (SQLException e) {
+                c.conn.rollback();
+                throw e;
+            } finally {
+                c.conn.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    // every player's win count, used to warm the in-memory leaderboard
+    public Map<String, Integer> loadScores() throws SQLException {
+        return withConnection(LOAD_SCORES, c -> {
+            Map<String, Integer> out = new HashMap<>();
+            try (ResultSet rs = c.prepare("SELECT username, wins FROM players").executeQuery()) {
+                while (rs.next()) out.put(rs.getString("username"), rs.getInt("wins"));
+            }
+            return out;
+        });
     }
 
     public List<String> getLeaderboard() throws SQLException {
-        List<String> out = new ArrayList<>();
         String sql = "SELECT username, wins FROM players ORDER BY wins DESC, username";
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) out.add(rs.getString("username") + " : " + rs.getInt("wins"));
-        }
-        return out;
+        return withConnection(LEADERBOARD, c -> {
+            List<String> out = new ArrayList<>();
+            try (ResultSet rs = c.prepare(sql).executeQuery()) {
+                while (rs.next()) out.add(rs.getString("username") + " : " + rs.getInt("wins"));
+            }
+            return out;
+        });
+    }
+
+    // one page of the leaderboard, best first
+    public List<PlayerScore> getLeaderboard(int limit, int offset) throws SQLException {
+        String sql = "SELECT username, wins FROM players ORDER BY wins DESC, username LIMIT ? OFFSET ?";
+        return withConnection(LEADERBOARD_PAGE, c -> {
+            List<PlayerScore> out = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                int rank = offset;
+                while (rs.next()) out.add(new PlayerScore(++rank, rs.getString("username"), rs.getInt("wins")));
+            }
+            return out;
+        });
+    }
+
+    // rank + wins of one player (null if unknown): counts the players ahead of them via the index
+    public PlayerScore getRank(String username) throws SQLException {
+        String sql = "SELECT p.wins, (SELECT COUNT(*) FROM players q "
+                + "WHERE q.wins > p.wins OR (q.wins = p.wins AND q.username < p.username)) AS ahead "
+                + "FROM players p WHERE p.username = ?";
+        return withConnection(RANK, c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new PlayerScore(rs.getInt("ahead") + 1, username, rs.getInt("wins")) : null;
+            }
+        });
+    }
+
+    // insert finished games in one transaction (used by GameRecorder)
+    public void addGames(List<GameRecord> games) throws SQLException {
+        String sql = "INSERT INTO games(player_x, player_o, winner, size, k, seed, moves, opening, started_at, duration_ms) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        withConnection(ADD_GAMES, c -> {
+            c.conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = c.prepare(sql);
+                for (GameRecord g : games) {
+                    ps.setString(1, g.playerX);
+                    ps.setString(2, g.playerO);
+                    ps.setString(3, String.valueOf(g.winner));
+                    ps.setInt(4, g.size);
+                    ps.setInt(5, g.winLength);
+                    ps.setLong(6, g.seed);
+                    ps.setBytes(7, g.packMoves());
+                    ps.setInt(8, g.opening());
+                    ps.setLong(9, g.startedAt);
+                    ps.setLong(10, g.durationMillis);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.conn.commit();
+            } catch (SQLException e) {
+                c.conn.rollback();
+                throw e;
+            } finally {
+                c.conn.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    // win / loss / draw counts per player over both sides, busiest players first (player = null for everyone)
+    public List<PlayerStats> getPlayerStats(String player, int limit) throws SQLException {
+        // one player: separate WHEREs so both halves can use the player_x / player_o indexes
+        String whereX = player == null ? "" : "WHERE player_x = ? ";
+        String whereO = player == null ? "" : "WHERE player_o = ? ";
+        String sql = "SELECT player, COUNT(*) AS games, SUM(result = 'W') AS wins, SUM(result = 'L') AS losses, "
+                + "SUM(result = 'D') AS draws FROM ("
+                + "SELECT player_x AS player, CASE winner WHEN 'X' THEN 'W' WHEN 'O' THEN 'L' ELSE 'D' END AS result "
+                + "FROM games " + whereX
+                + "UNION ALL "
+                + "SELECT player_o, CASE winner WHEN 'O' THEN 'W' WHEN 'X' THEN 'L' ELSE 'D' END "
+                + "FROM games " + whereO + ") "
+                + "GROUP BY player ORDER BY games DESC, player LIMIT ?";
+        return withConnection(PLAYER_STATS, c -> {
+            List<PlayerStats> out = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            int i = 1;
+            if (player != null) {
+                ps.setString(i++, player);
+                ps.setString(i++, player);
+            }
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new PlayerStats(rs.getString("player"), rs.getInt("games"),
+                            rs.getInt("wins"), rs.getInt("losses"), rs.getInt("draws")));
+                }
+            }
+            return out;
+        });
     }
 
-    public void close() throws SQLException { if (conn != null) conn.close(); }
+    // most played first moves on a size x size board, with how those games ended
+    public List<OpeningStats> getOpenings(int size, int limit) throws SQLException {
+        String sql = "SELECT opening, COUNT(*) AS games, SUM(winner = 'X') AS x_wins, SUM(winner = 'O') AS o_wins, "
+                + "SUM(winner = 'D') AS draws FROM games WHERE size = ? AND opening >= 0 "
+                + "GROUP BY opening ORDER BY games DESC, opening LIMIT ?";
+        return withConnection(OPENINGS, c -> {
+            List<OpeningStats> out = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            ps.setInt(1, size);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new OpeningStats(size, rs.getInt("opening"), rs.getInt("games"),
+                            rs.getInt("x_wins"), rs.getInt("o_wins"), rs.getInt("draws")));
+                }
+            }
+            return out;
+        });
+    }
+
+    // every stored rating (rank 0: RatingService ranks them in memory)
+    public List<PlayerRating> loadRatings() throws SQLException {
+        return withConnection(LOAD_RATINGS, c -> {
+            List<PlayerRating> out = new ArrayList<>();
+            try (ResultSet rs = c.prepare("SELECT username, rating, games, wins, losses, draws FROM ratings").executeQuery()) {
+                while (rs.next()) {
+                    out.add(new PlayerRating(0, rs.getString("username"), rs.getDouble("rating"), rs.getInt("games"),
+                            rs.getInt("wins"), rs.getInt("losses"), rs.getInt("draws")));
+                }
+            }
+            return out;
+        });
+    }
+
+    // write the current rating / record of several players in one transaction (used by RatingService flushes)
+    public void saveRatings(List<PlayerRating> ratings) throws SQLException {
+        String sql = "INSERT INTO ratings(username, rating, games, wins, losses, draws) VALUES (?, ?, ?, ?, ?, ?) "
+                + "ON CONFLICT(username) DO UPDATE SET rating = excluded.rating, games = excluded.games, "
+                + "wins = excluded.wins, losses = excluded.losses, draws = excluded.draws";
+        withConnection(SAVE_RATINGS, c -> {
+            c.conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = c.prepare(sql);
+                for (PlayerRating r : ratings) {
+                    ps.setString(1, r.username);
+                    ps.setDouble(2, r.rating);
+                    ps.setInt(3, r.games);
+                    ps.setInt(4, r.wins);
+                    ps.setInt(5, r.losses);
+                    ps.setInt(6, r.draws);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.conn.commit();
+            } catch (SQLException e) {
+                c.conn.rollback();
+                throw e;
+            } finally {
+                c.conn.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    public void close() throws SQLException {
+        SQLException first = null;
+        for (PooledConnection c : all) {
+            try {
+                for (PreparedStatement ps : c.statements.values()) ps.close();
+                c.conn.close();
+            } catch (SQLException e) {
+                if (first == null) first = e;
+            }
+        }
+        all.clear();
+        pool.clear();
+        if (first != null) throw first;
+    }
 }
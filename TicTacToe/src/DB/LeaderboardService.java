@@ -0,0 +1,175 @@
+package DB;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind leaderboard in front of DatabaseHandler.
+ * - All scores live in memory; reads never touch SQLite
+ * - The top-N list is kept sorted as wins come in
+ * - New wins are batched and flushed in one transaction every flushMillis
+ *   (the durability window) and once more on close / JVM shutdown
+ */
+public class LeaderboardService {
+
+    private static final class Entry {
+        final String name;
+        final int wins;
+        Entry(String name, int wins) { this.name = name; this.wins = wins; }
+    }
+
+    // same order as the SQL: wins DESC, username
+    private static final Comparator<Entry> ORDER =
+            Comparator.<Entry>comparingInt(e -> -e.wins).thenComparing(e -> e.name);
+
+    private final DatabaseHandler db;
+    private final int topN;
+    private final ConcurrentHashMap<String, Integer> scores = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> pending = new ConcurrentHashMap<>();
+    private final TreeSet<Entry> top = new TreeSet<>(ORDER); // guarded by itself
+    private final ScheduledExecutorService flusher;
+
+    public LeaderboardService(DatabaseHandler db, int topN, long flushMillis) throws SQLException {
+        this.db = db;
+        this.topN = topN;
+        for (Map.Entry<String, Integer> e : db.loadScores().entrySet()) {
+            scores.put(e.getKey(), e.getValue());
+            offerTop(new Entry(e.getKey(), e.getValue()));
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LeaderboardFlusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (SQLException | RuntimeException e) { // an escaped exception would cancel the schedule
+                System.err.println("Leaderboard flush failed (will retry): " + e);
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "LeaderboardShutdownFlush"));
+    }
+
+    /** Count a win now in memory; it reaches the DB with the next flush. */
+    public void addWin(String username) {
+        synchronized (top) {
+            int wins = scores.merge(username, 1, Integer::sum);
+            top.remove(new Entry(username, wins - 1));
+            offerTop(new Entry(username, wins));
+        }
+        pending.merge(username, 1, Integer::sum);
+    }
+
+    public int getWins(String username) { return scores.getOrDefault(username, 0); }
+
+    /** Top players as "name : wins", same format as DatabaseHandler.getLeaderboard(). */
+    public List<String> getLeaderboard() {
+        List<String> out = new ArrayList<>(topN);
+        synchronized (top) {
+            for (Entry e : top) out.add(e.name + " : " + e.wins);
+        }
+        return out;
+    }
+
+    /**
+     * One page of the leaderboard (ranks offset+1 .. offset+limit), from memory like every read:
+     * the sorted top-N while the page lies inside it, else one pass over all players keeping the
+     * best offset+limit, which counts unflushed wins too and leaves the DB to the flusher.
+     */
+    public List<PlayerScore> getLeaderboard(int limit, int offset) {
+        if (limit <= 0 || offset < 0 || offset >= scores.size()) return new ArrayList<>();
+        long end = (long) offset + limit; // no int overflow for offsets near Integer.MAX_VALUE
+        List<PlayerScore> out = new ArrayList<>(limit);
+        if (end <= topN) {
+            synchronized (top) {
+                int rank = 0;
+                for (Entry e : top) {
+                    if (++rank <= offset) continue;
+                    if (out.size() == limit) break;
+                    out.add(new PlayerScore(rank, e.name, e.wins));
+                }
+            }
+            return out;
+        }
+        int keep = (int) Math.min(end, scores.size());
+        TreeSet<Entry> best = new TreeSet<>(ORDER);
+        for (Map.Entry<String, Integer> s : scores.entrySet()) {
+            Entry e = new Entry(s.getKey(), s.getValue());
+            if (best.size() < keep) {
+                best.add(e);
+            } else if (ORDER.compare(e, best.last()) < 0) {
+                best.pollLast();
+                best.add(e);
+            }
+        }
+        int rank = 0;
+        for (Entry e : best) {
+            if (++rank <= offset) continue;
+            out.add(new PlayerScore(rank, e.name, e.wins));
+        }
+        return out;
+    }
+
+    /** Rank and wins of one player, or null if they never won. From memory, like getLeaderboard. */
+    public PlayerScore getRank(String username) {
+        synchronized (top) {
+            int rank = 0;
+            for (Entry e : top) {
+                rank++;
+                if (e.name.equals(username)) return new PlayerScore(rank, e.name, e.wins);
+            }
+        }
+        Integer wins = scores.get(username);
+        if (wins == null) return null;
+        // outside the top-N: 1 + everyone ahead in ORDER (more wins, or as many and an earlier name)
+        int rank = 1;
+        for (Map.Entry<String, Integer> s : scores.entrySet()) {
+            int w = s.getValue();
+            if (w > wins || w == wins && s.getKey().compareTo(username) < 0) rank++;
+        }
+        return new PlayerScore(rank, username, wins);
+    }
+
+    /** Write all pending wins in one transaction. */
+    public synchronized void flush() throws SQLException {
+        if (pending.isEmpty()) return;
+        Map<String, Integer> batch = new HashMap<>();
+        for (String name : pending.keySet()) {
+            Integer n = pending.remove(name);
+            if (n != null) batch.put(name, n);
+        }
+        try {
+            db.addWins(batch);
+        } catch (SQLException e) {
+            batch.forEach((name, n) -> pending.merge(name, n, Integer::sum)); // keep them for the next try
+            throw e;
+        }
+    }
+
+    /** Stop the background flusher and write what is left. Safe to call more than once. */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Leaderboard final flush failed: " + e.getMessage());
+        }
+    }
+
+    // caller holds the lock on top (or is the constructor)
+    private void offerTop(Entry e) {
+        top.add(e);
+        if (top.size() > topN) top.pollLast();
+    }
+}
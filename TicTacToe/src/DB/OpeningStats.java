@@ -0,0 +1,23 @@
+package DB;
+
+/** How games that started on one cell (X's first move) of a size x size board ended. */
+public class OpeningStats {
+    public final int size;
+    public final int cell;
+    public final int games;
+    public final int xWins;
+    public final int oWins;
+    public final int draws;
+
+    public OpeningStats(int size, int cell, int games, int xWins, int oWins, int draws) {
+        this.size = size;
+        this.cell = cell;
+        this.games = games;
+        this.xWins = xWins;
+        this.oWins = oWins;
+        this.draws = draws;
+    }
+
+    @Override
+    public String toString() { return size + "x" + size + " cell " + cell + " : " + games; }
+}
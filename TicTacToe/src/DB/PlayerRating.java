@@ -0,0 +1,25 @@
+package DB;
+
+/** One player's rating and record; rank is 1-based in (rating DESC, username) order, 0 when not ranked. */
+public class PlayerRating {
+    public final int rank;
+    public final String username;
+    public final double rating;
+    public final int games;
+    public final int wins;
+    public final int losses;
+    public final int draws;
+
+    public PlayerRating(int rank, String username, double rating, int games, int wins, int losses, int draws) {
+        this.rank = rank;
+        this.username = username;
+        this.rating = rating;
+        this.games = games;
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+    }
+
+    @Override
+    public String toString() { return username + " : " + Math.round(rating); }
+}
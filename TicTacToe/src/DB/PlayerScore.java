@@ -0,0 +1,17 @@
+package DB;
+
+/** One leaderboard row: 1-based rank in (wins DESC, username) order. */
+public class PlayerScore {
+    public final int rank;
+    public final String username;
+    public final int wins;
+
+    public PlayerScore(int rank, String username, int wins) {
+        this.rank = rank;
+        this.username = username;
+        this.wins = wins;
+    }
+
+    @Override
+    public String toString() { return username + " : " + wins; }
+}
@@ -0,0 +1,23 @@
+package DB;
+
+/** Record of one player over every stored game, either side. */
+public class PlayerStats {
+    public final String player;
+    public final int games;
+    public final int wins;
+    public final int losses;
+    public final int draws;
+
+    public PlayerStats(String player, int games, int wins, int losses, int draws) {
+        this.player = player;
+        this.games = games;
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+    }
+
+    public double winRate() { return games == 0 ? 0 : (double) wins / games; }
+
+    @Override
+    public String toString() { return player + " : " + wins + "/" + games; }
+}
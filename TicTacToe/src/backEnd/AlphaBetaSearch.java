@@ -0,0 +1,215 @@
+package backEnd;
+
+import java.util.SplittableRandom;
+
+/**
+ * Alpha-beta (negamax) move search for GridEngine boards.
+ * - Iterative deepening until the time budget runs out; the last fully searched depth wins
+ * - Move ordering: transposition-table move first, then cells by local threat score
+ * - Zobrist-hashed transposition table, one per thread so games never contend on it
+ * Only cells within two steps of a stone are searched, which keeps 15x15 boards tractable.
+ */
+public final class AlphaBetaSearch {
+    private static final int WIN = 1_000_000;
+    private static final int MAX_CELLS = GridEngine.MAX_SIZE * GridEngine.MAX_SIZE;
+    private static final int MAX_PLY = 64;
+    private static final int EXACT = 0, LOWER = 1, UPPER = 2;
+    private static final int[][] DIRS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    // window score by stone count, capped so evaluations never look like a win
+    private static final int[] WEIGHTS = {0, 1, 10, 100, 1_000, 10_000};
+    private static final int MAX_EVAL = WIN / 2;
+
+    // [0] = X stone, [1] = O stone, per cell; SALT separates board sizes / win lengths
+    private static final long[][] ZOBRIST = new long[2][MAX_CELLS];
+    private static final long[] SALT = new long[GridEngine.MAX_SIZE * (GridEngine.MAX_SIZE + 1)];
+    static {
+        SplittableRandom r = new SplittableRandom(0x7177_7AC7_0E5EL);
+        for (long[] keys : ZOBRIST) for (int i = 0; i < keys.length; i++) keys[i] = r.nextLong();
+        for (int i = 0; i < SALT.length; i++) SALT[i] = r.nextLong();
+    }
+
+    private static final int TT_BITS = Integer.getInteger("ttt.ttBits", 16);
+    private static final ThreadLocal<AlphaBetaSearch> LOCAL = ThreadLocal.withInitial(AlphaBetaSearch::new);
+
+    // transposition table: full key + packed (score | move | depth | flag)
+    private final long[] ttKeys = new long[1 << TT_BITS];
+    private final long[] ttData = new long[1 << TT_BITS];
+
+    // per-search state
+    private final char[] cells = new char[MAX_CELLS];
+    private final int[][] moves = new int[MAX_PLY][MAX_CELLS];
+    private final int[][] order = new int[MAX_PLY][MAX_CELLS];
+    private int size, winLength, area, filled;
+    private long hash, deadline;
+    private int nodes, rootBest;
+    private boolean aborted;
+
+    private AlphaBetaSearch() { }
+
+    /** Best cell for {@code me} ('X' or 'O') on this board, or -1 if the board is full. */
+    public static int findMove(char[] board, int size, int winLength, char me, long budgetMillis) {
+        return LOCAL.get().search(board, size, winLength, me, budgetMillis);
+    }
+
+    private int search(char[] board, int size, int winLength, char me, long budgetMillis) {
+        this.size = size;
+        this.winLength = winLength;
+        this.area = size * size;
+        this.hash = SALT[size * GridEngine.MAX_SIZE + winLength - 1];
+        this.filled = 0;
+        for (int i = 0; i < area; i++) {
+            cells[i] = board[i];
+            if (board[i] != '-') {
+                filled++;
+                hash ^= ZOBRIST[board[i] == 'X' ? 0 : 1][i];
+            }
+        }
+        if (filled == area) return -1;
+
+        this.deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        this.aborted = false;
+        int best = -1;
+        for (int depth = 1; depth <= area - filled && depth < MAX_PLY; depth++) {
+            rootBest = -1;
+            int score = negamax(depth, -WIN - 1, WIN + 1, me, -1, 0);
+            if (aborted) break;
+            best = rootBest;
+            if (Math.abs(score) >= WIN - MAX_PLY) break; // forced result found
+        }
+        if (best < 0) {
+            // not even depth 1 finished: take the best-ordered candidate
+            int n = generate(0, -1, me);
+            best = n > 0 ? moves[0][0] : -1;
+        }
+        return best;
+    }
+
+    private int negamax(int depth, int alpha, int beta, char side, int last, int ply) {
+        if (last >= 0 && GridEngine.isWinAt(cells, size, winLength, last)) return -(WIN - ply); // opponent just won
+        if (filled == area) return 0;
+        if (depth == 0) return evaluate(side);
+        if ((++nodes & 127) == 0 && System.nanoTime() > deadline) aborted = true;
+        if (aborted) return 0;
+
+        int slot = (int) hash & (ttKeys.length - 1);
+        if (ply > 0 && ttKeys[slot] == hash) {
+            long d = ttData[slot];
+            int ttDepth = (int) (d >>> 16) & 0xFF, flag = (int) (d >>> 24) & 0x3, score = (int) (d >> 32);
+            if (ttDepth >= depth) {
+                if (flag == EXACT) return score;
+                if (flag == LOWER && score >= beta) return score;
+                if (flag == UPPER && score <= alpha) return score;
+            }
+        }
+
+        int alphaStart = alpha, best = -WIN - 1, bestMove = -1;
+        char other = side == 'X' ? 'O' : 'X';
+        int n = generate(ply, ttMove(hash), side);
+        int[] list = moves[ply];
+        for (int i = 0; i < n; i++) {
+            int m = list[i];
+            place(m, side);
+            int score = -negamax(depth - 1, -beta, -alpha, other, m, ply + 1);
+            unplace(m, side);
+            if (aborted) return 0;
+            if (score > best) {
+                best = score;
+                bestMove = m;
+                if (ply == 0) rootBest = m;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+
+        int flag = best <= alphaStart ? UPPER : best >= beta ? LOWER : EXACT;
+        ttKeys[slot] = hash;
+        ttData[slot] = ((long) best << 32) | ((long) flag << 24) | ((long) depth << 16) | (bestMove & 0xFFFF);
+        return best;
+    }
+
+    private int ttMove(long key) {
+        int slot = (int) key & (ttKeys.length - 1);
+        return ttKeys[slot] == key ? (int) (ttData[slot] & 0xFFFF) : -1;
+    }
+
+    private void place(int pos, char s) {
+        cells[pos] = s;
+        filled++;
+        hash ^= ZOBRIST[s == 'X' ? 0 : 1][pos];
+    }
+
+    private void unplace(int pos, char s) {
+        cells[pos] = '-';
+        filled--;
+        hash ^= ZOBRIST[s == 'X' ? 0 : 1][pos];
+    }
+
+    // candidate moves into moves[ply], ordered: tt move, then by threat score (insertion sort)
+    private int generate(int ply, int ttMove, char side) {
+        int[] list = moves[ply], keys = order[ply];
+        boolean wide = filled == 0 || area <= 16;
+        int n = 0;
+        for (int i = 0; i < area; i++) {
+            if (cells[i] != '-' || !(wide || nearStone(i))) continue;
+            int key = i == ttMove ? Integer.MAX_VALUE : threat(i, side) + threat(i, side == 'X' ? 'O' : 'X');
+            int j = n++;
+            while (j > 0 && keys[j - 1] < key) {
+                keys[j] = keys[j - 1];
+                list[j] = list[j - 1];
+                j--;
+            }
+            keys[j] = key;
+            list[j] = i;
+        }
+        return n;
+    }
+
+    private boolean nearStone(int pos) {
+        int r = pos / size, c = pos % size;
+        for (int dr = -2; dr <= 2; dr++) {
+            for (int dc = -2; dc <= 2; dc++) {
+                int rr = r + dr, cc = c + dc;
+                if (rr >= 0 && rr < size && cc >= 0 && cc < size && cells[rr * size + cc] != '-') return true;
+            }
+        }
+        return false;
+    }
+
+    // how many of s's stones line up through pos (squared per direction so open lines rank first)
+    private int threat(int pos, char s) {
+        int r = pos / size, c = pos % size, total = 0;
+        for (int[] d : DIRS) {
+            int n = count(r, c, d[0], d[1], s) + count(r, c, -d[0], -d[1], s);
+            total += n * n;
+        }
+        return total;
+    }
+
+    private int count(int r, int c, int dr, int dc, char s) {
+        int n = 0;
+        for (r += dr, c += dc; r >= 0 && r < size && c >= 0 && c < size && cells[r * size + c] == s; r += dr, c += dc) n++;
+        return n;
+    }
+
+    // static evaluation from side's view: every K-window holding only one colour scores ~10^stones
+    private int evaluate(char side) {
+        int score = 0;
+        for (int[] d : DIRS) {
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    int er = r + d[0] * (winLength - 1), ec = c + d[1] * (winLength - 1);
+                    if (er < 0 || er >= size || ec < 0 || ec >= size) continue;
+                    int mine = 0, theirs = 0;
+                    for (int k = 0; k < winLength; k++) {
+                        char v = cells[(r + d[0] * k) * size + c + d[1] * k];
+                        if (v == side) mine++;
+                        else if (v != '-') theirs++;
+                    }
+                    if (theirs == 0 && mine > 0) score += WEIGHTS[Math.min(mine, WEIGHTS.length - 1)];
+                    else if (mine == 0 && theirs > 0) score -= WEIGHTS[Math.min(theirs, WEIGHTS.length - 1)];
+                }
+            }
+        }
+        return Math.max(-MAX_EVAL, Math.min(MAX_EVAL, score));
+    }
+}
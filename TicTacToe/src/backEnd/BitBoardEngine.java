@@ -0,0 +1,135 @@
+package backEnd;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * 3x3 engine that keeps each player as a 9-bit mask (bit i = cell i).
+ * Wins are checked against precomputed line masks and empty cells are picked
+ * with bit tricks, so a move allocates nothing. The char[] board is kept in
+ * sync only so getBoard() stays cheap for the UI / JSON code.
+ */
+public class BitBoardEngine implements GameEngine {
+    private static final int FULL = 0x1FF;
+    // rows, columns, diagonals
+    private static final int[] LINES = {
+            0x007, 0x038, 0x1C0,
+            0x049, 0x092, 0x124,
+            0x111, 0x054
+    };
+
+    private final char[] board = new char[9];
+    private int xMask, oMask;
+    private char winner = ' ';
+    private RandomGenerator rand; // per engine, so no other thread ever touches it
+    private long seed;
+    private Difficulty difficulty = Difficulty.RANDOM;
+    private Strategy strategy = Strategy.of(difficulty);
+    private final MoveLog log = new MoveLog();
+
+    public BitBoardEngine() { reset(); }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < 9; i++) board[i] = '-';
+        xMask = 0;
+        oMask = 0;
+        winner = ' ';
+        log.clear();
+        setSeed(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override public long getSeed() { return seed; }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.rand = new SplittableRandom(seed);
+    }
+
+    @Override public char[] getBoard() { return board; }
+    @Override public char getWinner() { return winner; }
+    @Override public boolean isGameOver() { return winner != ' ' || (xMask | oMask) == FULL; }
+
+    @Override public void setDifficulty(Difficulty level) {
+        difficulty = level;
+        strategy = Strategy.of(level);
+    }
+
+    // play the CPU side with any policy (setDifficulty switches back to a built-in one)
+    public void setStrategy(Strategy strategy) { this.strategy = strategy; }
+    public Strategy getStrategy() { return strategy; }
+    @Override public Difficulty getDifficulty() { return difficulty; }
+
+    public int getXMask() { return xMask; }
+    public int getOMask() { return oMask; }
+
+    @Override
+    public boolean playerMove(int pos) { return placeSymbol(pos, 'X'); }
+
+    // CPU (O) with the current strategy; works on the masks directly, no arrays built
+    @Override
+    public void computerMove() {
+        if (isGameOver()) return;
+        placeSymbol(strategy.pickMove(xMask, oMask, false, rand), 'O');
+    }
+
+    @Override
+    public boolean placeSymbol(int pos, char s) {
+        if (pos < 0 || pos >= 9) return false;
+        int bit = 1 << pos;
+        if (((xMask | oMask) & bit) != 0) return false;
+        if (s == 'X') xMask |= bit;
+        else oMask |= bit;
+        board[pos] = s;
+        log.add(pos, s);
+        checkWinner(s == 'X' ? xMask : oMask, s);
+        return true;
+    }
+
+    @Override public MoveLog getMoveLog() { return log; }
+
+    @Override
+    public boolean undo() {
+        int last = log.removeLast();
+        if (last < 0) return false;
+        int bit = 1 << MoveLog.posOf(last);
+        xMask &= ~bit;
+        oMask &= ~bit;
+        board[MoveLog.posOf(last)] = '-';
+        // the game may have been played on past a win (placeSymbol doesn't stop it), so look again
+        winner = ' ';
+        for (int line : LINES) {
+            if ((xMask & line) == line) winner = 'X';
+            else if ((oMask & line) == line) winner = 'O';
+            if (winner != ' ') return true;
+        }
+        if ((xMask | oMask) == FULL) winner = 'D';
+        return true;
+    }
+
+    // only the side that just moved can have completed a line
+    private void checkWinner(int mask, char s) {
+        for (int line : LINES) {
+            if ((mask & line) == line) {
+                winner = s;
+                return;
+            }
+        }
+        if ((xMask | oMask) == FULL) winner = 'D'; // D = draw
+    }
+
+    @Override
+    public void setState(char[] board, char winner) {
+        xMask = 0;
+        oMask = 0;
+        for (int i = 0; i < 9; i++) {
+            this.board[i] = board[i];
+            if (board[i] == 'X') xMask |= 1 << i;
+            else if (board[i] == 'O') oMask |= 1 << i;
+        }
+        this.winner = winner;
+        log.clear();
+    }
+}
@@ -0,0 +1,137 @@
+package backEnd;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Move selection for the CPU on a 3x3 board given as X / O bit masks.
+ * PERFECT uses a table of best moves for every one of the 3^9 board codes
+ * (cell i contributes 0/1/2 * 3^i for empty/X/O), solved once by negamax when
+ * the class loads, so a CPU move is a single array lookup.
+ */
+public final class CpuPlayer {
+    private static final int FULL = 0x1FF;
+    private static final int STATES = 19683; // 3^9
+    private static final int[] LINES = {
+            0x007, 0x038, 0x1C0,
+            0x049, 0x092, 0x124,
+            0x111, 0x054
+    };
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+    private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    // best cell for the side to move ([0] = X to move, [1] = O to move), -1 when no move
+    private static final byte[][] BEST = new byte[2][STATES];
+    private static final byte[][] SCORE = new byte[2][STATES];
+
+    static {
+        for (byte[] s : SCORE) Arrays.fill(s, UNSOLVED);
+        for (byte[] b : BEST) Arrays.fill(b, (byte) -1);
+        // every code, not just the ones reachable from an empty board, so setState()/placeSymbol() boards work too
+        for (int code = 0; code < STATES; code++) {
+            int xMask = 0, oMask = 0;
+            for (int i = 0, c = code; i < 9; i++, c /= 3) {
+                if (c % 3 == 1) xMask |= 1 << i;
+                else if (c % 3 == 2) oMask |= 1 << i;
+            }
+            solve(xMask, oMask, code, true);
+            solve(xMask, oMask, code, false);
+        }
+    }
+
+    private CpuPlayer() { }
+
+    /** Forces the perfect-play table to be built now rather than on the first CPU move. */
+    public static void warmUp() { }
+
+    /** Pick a cell for the side playing {@code asX ? X : O}, or -1 if the board is full. */
+    public static int pickMove(Difficulty level, int xMask, int oMask, boolean asX, RandomGenerator rand) {
+        int empties = FULL & ~(xMask | oMask);
+        if (empties == 0) return -1;
+        switch (level) {
+            case PERFECT: {
+                int best = BEST[asX ? 0 : 1][encode(xMask, oMask)];
+                if (best >= 0) return best;
+                break;
+            }
+            case GREEDY: {
+                int own = asX ? xMask : oMask, opp = asX ? oMask : xMask;
+                int cell = completingCell(own, empties);          // win
+                if (cell < 0) cell = completingCell(opp, empties); // block
+                if (cell < 0 && (empties & 0x010) != 0) cell = 4;  // center
+                if (cell < 0 && (empties & 0x145) != 0) cell = randomCell(empties & 0x145, rand); // corners
+                if (cell >= 0) return cell;
+                break;
+            }
+            default:
+                break;
+        }
+        return randomCell(empties, rand);
+    }
+
+    /** Index of a uniformly chosen set bit of {@code cells} (must be non-zero). */
+    public static int randomCell(int cells, RandomGenerator rand) {
+        for (int k = rand.nextInt(Integer.bitCount(cells)); k > 0; k--) {
+            cells &= cells - 1; // drop lowest set bit
+        }
+        return Integer.numberOfTrailingZeros(cells);
+    }
+
+    public static boolean hasLine(int mask) {
+        for (int line : LINES) if ((mask & line) == line) return true;
+        return false;
+    }
+
+    // an empty cell that would complete one of mask's lines, or -1
+    private static int completingCell(int mask, int empties) {
+        for (int line : LINES) {
+            int missing = line & ~mask;
+            if (Integer.bitCount(missing) == 1 && (missing & empties) != 0) {
+                return Integer.numberOfTrailingZeros(missing);
+            }
+        }
+        return -1;
+    }
+
+    private static int encode(int xMask, int oMask) {
+        int code = 0;
+        for (int i = 0; i < 9; i++) {
+            if ((xMask & (1 << i)) != 0) code += POW3[i];
+            else if ((oMask & (1 << i)) != 0) code += 2 * POW3[i];
+        }
+        return code;
+    }
+
+    // negamax from the side-to-move's point of view: >0 win (sooner is larger), 0 draw, <0 loss
+    private static int solve(int xMask, int oMask, int code, boolean xToMove) {
+        int side = xToMove ? 0 : 1;
+        if (SCORE[side][code] != UNSOLVED) return SCORE[side][code];
+
+        int empties = FULL & ~(xMask | oMask);
+        int bestScore = empties == 0 ? 0 : -100;
+        int bestCell = -1;
+        if (!hasLine(xMask) && !hasLine(oMask)) {
+            for (int cells = empties; cells != 0; cells &= cells - 1) {
+                int cell = Integer.numberOfTrailingZeros(cells);
+                int bit = 1 << cell;
+                int score;
+                if (xToMove) {
+                    score = hasLine(xMask | bit) ? Integer.bitCount(empties)
+                            : -solve(xMask | bit, oMask, code + POW3[cell], false);
+                } else {
+                    score = hasLine(oMask | bit) ? Integer.bitCount(empties)
+                            : -solve(xMask, oMask | bit, code + 2 * POW3[cell], true);
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestCell = cell;
+                }
+            }
+        } else {
+            bestScore = 0; // finished game: nothing to choose
+        }
+        SCORE[side][code] = (byte) bestScore;
+        BEST[side][code] = (byte) bestCell;
+        return bestScore;
+    }
+}
@@ -0,0 +1,15 @@
+package backEnd;
+
+/** CPU strength: random empty cell, win/block heuristic, or solved perfect play. */
+public enum Difficulty {
+    RANDOM, GREEDY, PERFECT;
+
+    // lenient parse for query params / menu values, falls back to the given default
+    public static Difficulty parse(String s, Difficulty fallback) {
+        if (s == null) return fallback;
+        for (Difficulty d : values()) {
+            if (d.name().equalsIgnoreCase(s.trim())) return d;
+        }
+        return fallback;
+    }
+}
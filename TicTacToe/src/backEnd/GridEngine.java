@@ -0,0 +1,183 @@
+package backEnd;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * N x N board where K in a row wins (3/3 = classic, 15/5 = gomoku).
+ * Wins are detected incrementally by walking the 4 directions through the
+ * last placed cell instead of scanning the whole board. The PERFECT level
+ * runs an alpha-beta search bounded by a per-move time budget.
+ */
+public class GridEngine implements GameEngine {
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 25;
+
+    private final int size;
+    private final int winLength;
+    private final char[] board;
+    private int filled;
+    private char winner = ' ';
+    private RandomGenerator rand; // per engine, so no other thread ever touches it
+    private long seed;
+    private Difficulty difficulty = Difficulty.RANDOM;
+    private long timeBudgetMillis = Long.getLong("ttt.cpuMillis", 300);
+    private final MoveLog log = new MoveLog();
+
+    /** True if size x size with winLength in a row is a board this engine plays. */
+    public static boolean isValidShape(int size, int winLength) {
+        return size >= MIN_SIZE && size <= MAX_SIZE && winLength >= 3 && winLength <= size;
+    }
+
+    public GridEngine(int size, int winLength) {
+        if (!isValidShape(size, winLength)) {
+            throw new IllegalArgumentException("bad board " + size + "x" + size + " / " + winLength + " in a row");
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.board = new char[size * size];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < board.length; i++) board[i] = '-';
+        filled = 0;
+        winner = ' ';
+        log.clear();
+        setSeed(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override public long getSeed() { return seed; }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.rand = new SplittableRandom(seed);
+    }
+
+    @Override public int getSize() { return size; }
+    @Override public int getWinLength() { return winLength; }
+    @Override public char[] getBoard() { return board; }
+    @Override public char getWinner() { return winner; }
+    @Override public boolean isGameOver() { return winner != ' ' || filled == board.length; }
+
+    @Override public void setDifficulty(Difficulty level) { difficulty = level; }
+    @Override public Difficulty getDifficulty() { return difficulty; }
+
+    // upper bound for one PERFECT move (the search stops at the last finished depth)
+    public void setTimeBudgetMillis(long millis) { timeBudgetMillis = millis; }
+
+    @Override
+    public boolean playerMove(int pos) { return placeSymbol(pos, 'X'); }
+
+    @Override
+    public void computerMove() {
+        if (isGameOver()) return;
+        int pos;
+        switch (difficulty) {
+            case PERFECT:
+                pos = AlphaBetaSearch.findMove(board, size, winLength, 'O', timeBudgetMillis);
+                break;
+            case GREEDY:
+                pos = completingCell('O');
+                if (pos < 0) pos = completingCell('X');
+                if (pos < 0) pos = randomCell(true);
+                break;
+            default:
+                pos = -1;
+        }
+        if (pos < 0) pos = randomCell(false);
+        placeSymbol(pos, 'O');
+    }
+
+    @Override
+    public boolean placeSymbol(int pos, char s) {
+        if (pos < 0 || pos >= board.length || board[pos] != '-') return false;
+        board[pos] = s;
+        filled++;
+        log.add(pos, s);
+        if (isWinAt(board, size, winLength, pos)) winner = s;
+        else if (filled == board.length) winner = 'D'; // D = draw
+        return true;
+    }
+
+    @Override public MoveLog getMoveLog() { return log; }
+
+    @Override
+    public boolean undo() {
+        int last = log.removeLast();
+        if (last < 0) return false;
+        board[MoveLog.posOf(last)] = '-';
+        filled--;
+        // earliest remaining move that completes a line, in case play went on past a win
+        winner = ' ';
+        for (int i = 0; i < log.size() && winner == ' '; i++) {
+            if (isWinAt(board, size, winLength, log.pos(i))) winner = log.symbol(i);
+        }
+        if (winner == ' ' && filled == board.length) winner = 'D';
+        return true;
+    }
+
+    @Override
+    public void setState(char[] board, char winner) {
+        filled = 0;
+        for (int i = 0; i < this.board.length; i++) {
+            this.board[i] = board[i];
+            if (board[i] != '-') filled++;
+        }
+        this.winner = winner;
+        log.clear();
+    }
+
+    /** True if the stone at pos is part of winLength in a row (row, column or diagonal). */
+    static boolean isWinAt(char[] board, int size, int winLength, int pos) {
+        char s = board[pos];
+        int r = pos / size, c = pos % size;
+        return run(board, size, s, r, c, 0, 1) + run(board, size, s, r, c, 0, -1) + 1 >= winLength
+                || run(board, size, s, r, c, 1, 0) + run(board, size, s, r, c, -1, 0) + 1 >= winLength
+                || run(board, size, s, r, c, 1, 1) + run(board, size, s, r, c, -1, -1) + 1 >= winLength
+                || run(board, size, s, r, c, 1, -1) + run(board, size, s, r, c, -1, 1) + 1 >= winLength;
+    }
+
+    // stones of symbol s starting next to (r,c) in direction (dr,dc)
+    private static int run(char[] board, int size, char s, int r, int c, int dr, int dc) {
+        int n = 0;
+        for (r += dr, c += dc; r >= 0 && r < size && c >= 0 && c < size && board[r * size + c] == s; r += dr, c += dc) n++;
+        return n;
+    }
+
+    // an empty cell that wins immediately for s, or -1
+    private int completingCell(char s) {
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != '-') continue;
+            board[i] = s;
+            boolean win = isWinAt(board, size, winLength, i);
+            board[i] = '-';
+            if (win) return i;
+        }
+        return -1;
+    }
+
+    // uniformly random empty cell; with nearStones only cells touching a stone (falls back to any)
+    private int randomCell(boolean nearStones) {
+        int count = 0, pick = -1;
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != '-' || (nearStones && !hasNeighbour(i))) continue;
+            if (rand.nextInt(++count) == 0) pick = i; // reservoir sampling, no list needed
+        }
+        return pick < 0 && nearStones ? randomCell(false) : pick;
+    }
+
+    private boolean hasNeighbour(int pos) {
+        int r = pos / size, c = pos % size;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int rr = r + dr, cc = c + dc;
+                if ((dr != 0 || dc != 0) && rr >= 0 && rr < size && cc >= 0 && cc < size && board[rr * size + cc] != '-') return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,19 +1,37 @@
 package backEnd;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
-public class TicTacToeBackend {
+public class TicTacToeBackend implements GameEngine {
     private final char[] board = new char[9];
     private char winner = ' ';
-    private final Random rand = new Random();
+    private RandomGenerator rand;
+    private long seed;
+    private Difficulty difficulty = Difficulty.RANDOM;
+    private final MoveLog log = new MoveLog();
 
     public TicTacToeBackend() { reset(); }
 
     public void reset() {
         for (int i = 0; i < 9; i++) board[i] = '-';
         winner = ' ';
+        log.clear();
+        setSeed(ThreadLocalRandom.current().nextLong());
     }
 
+    public long getSeed() { return seed; }
+
+    // CPU's random choices start over from this seed
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.rand = new SplittableRandom(seed);
+    }
+
+    public void setDifficulty(Difficulty level) { difficulty = level; }
+    public Difficulty getDifficulty() { return difficulty; }
+
     public char[] getBoard() { return board; }
     public char getWinner() { return winner; }
     public boolean isGameOver() { return winner != ' ' || isBoardFull(); }
@@ -26,24 +44,42 @@ public class TicTacToeBackend {
     public boolean playerMove(int pos) {
         if (pos < 0 || pos >= 9 || board[pos] != '-') return false;
         board[pos] = 'X';
+        log.add(pos, 'X');
         checkWinner();
         return true;
     }
 
-    // simple random AI (O)
+    // CPU (O): random / greedy / perfect depending on difficulty
     public void computerMove() {
         if (isGameOver()) return;
-        int[] empties = java.util.stream.IntStream.range(0,9)
-                .filter(i -> board[i] == '-').toArray();
-        if (empties.length == 0) return;
-        board[empties[rand.nextInt(empties.length)]] = 'O';
+        int xMask = 0, oMask = 0;
+        for (int i = 0; i < 9; i++) {
+            if (board[i] == 'X') xMask |= 1 << i;
+            else if (board[i] == 'O') oMask |= 1 << i;
+        }
+        int pos = CpuPlayer.pickMove(difficulty, xMask, oMask, false, rand);
+        if (pos < 0) return;
+        board[pos] = 'O';
+        log.add(pos, 'O');
         checkWinner();
     }
 
     // used by UI to place any symbol (if needed)
     public boolean placeSymbol(int pos, char s) {
         if (pos < 0 || pos >= 9 || board[pos] != '-') return false;
-        board[pos] = s; checkWinner(); return true;
+        board[pos] = s; log.add(pos, s); checkWinner(); return true;
+    }
+
+    public MoveLog getMoveLog() { return log; }
+
+    // take back the newest move
+    public boolean undo() {
+        int last = log.removeLast();
+        if (last < 0) return false;
+        board[MoveLog.posOf(last)] = '-';
+        winner = ' ';
+        checkWinner();
+        return true;
     }
 
     private void checkWinner() {
@@ -66,5 +102,6 @@ public class TicTacToeBackend {
     public void setState(char[] board, char winner) {
         for (int i = 0; i < 9; i++) this.board[i] = board[i];
         this.winner = winner;
+        log.clear();
     }
 }
@@ -11,8 +11,10 @@ import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
-import backEnd.TicTacToeBackend;
+import backEnd.Difficulty;
+import backEnd.GameEngine;
 import DB.DatabaseHandler;
+import DB.LeaderboardService;
 import network.Client;
 
 
@@ -21,11 +23,19 @@ import java.sql.SQLException;
 import java.util.List;
 
 public class MainApp extends Application {
-    private final TicTacToeBackend backend = new TicTacToeBackend();
-    private final Button[] cells = new Button[9];
+    private GameEngine backend = GameEngine.create(3, 3);
+    private Button[] cells = new Button[0];
+    private final GridPane grid = new GridPane();
+
+    // board shapes offered in the menu: {size, k in a row}
+    private static final int[][] BOARD_SHAPES = {{3, 3}, {7, 4}, {15, 5}};
+    private static final String[] BOARD_NAMES = {"3x3", "7x7 (4 in a row)", "15x15 (5 in a row)"};
     private Label status = new Label("Welcome!");
     private DatabaseHandler db;
+    private LeaderboardService leaderboard; // null whenever db is null
     private boolean onlineSaveMode = false;
+    private boolean pvpMode = false; // online vs another human, paired by the server
+    private char mySymbol = 'X';     // side in the current pvp game
 
     // Scenes
     private Scene menuScene;
@@ -42,8 +52,10 @@ public class MainApp extends Application {
         // ==== DB init ====
         try {
             db = new DatabaseHandler("C:/Games/TicTacToe/tictactoe.db");
+            leaderboard = new LeaderboardService(db, 100, 1000);
         } catch (SQLException e) {
             db = null;
+            leaderboard = null;
             System.err.println("DB init failed: " + e.getMessage());
         }
 
@@ -61,14 +73,28 @@ public class MainApp extends Application {
         // ==== MENU screen ====
         Button offlineBtn = new Button("🎮 Play (offline vs CPU)");
         Button onlineBtn = new Button("🌐 Play (online-save mode)");
+        Button pvpBtn = new Button("👥 Play (online vs human)");
         Button leaderboardBtn = new Button("🏆 Show Leaderboard");
         Button musicBtn = new Button("🔊 Music ON");
         Button settingsBtn = new Button("⚙️ Settings");
 
+        // CPU difficulty picker
+        ComboBox<Difficulty> levelBox = new ComboBox<>();
+        levelBox.getItems().addAll(Difficulty.values());
+        levelBox.setValue(Difficulty.RANDOM);
+        HBox levelRow = new HBox(10, new Label("CPU level:"), levelBox);
+
+        // board size picker
+        ComboBox<String> sizeBox = new ComboBox<>();
+        sizeBox.getItems().addAll(BOARD_NAMES);
+        sizeBox.getSelectionModel().select(0);
+        levelRow.getChildren().addAll(new Label("Board:"), sizeBox);
+
         // Big top buttons
         Font bigFont = Font.font("Arial", 22);
         offlineBtn.setFont(bigFont);
         onlineBtn.setFont(bigFont);
+        pvpBtn.setFont(bigFont);
         leaderboardBtn.setFont(bigFont);
 
         // Smaller bottom buttons
@@ -79,13 +105,20 @@ public class MainApp extends Application {
         // Actions
         offlineBtn.setOnAction(e -> {
             onlineSaveMode = false;
+            pvpMode = false;
+            useBoard(BOARD_SHAPES[sizeBox.getSelectionModel().getSelectedIndex()]);
             backend.reset();
+            backend.setDifficulty(levelBox.getValue());
             status.setText("Offline: you are X");
             updateUI();
             primaryStage.setScene(gameScene);
         });
         onlineBtn.setOnAction(e -> {
             onlineSaveMode = true;
+            pvpMode = false;
+            closeClient();
+            int[] shape = BOARD_SHAPES[sizeBox.getSelectionModel().getSelectedIndex()];
+            useBoard(shape);
             backend.reset();
             status.setText("Connecting to server...");
             updateUI();
@@ -108,7 +141,9 @@ public class MainApp extends Application {
                                 handleEnd();  // reuse existing logic!
                             }
                         });
-                    });
+                    }, true); // binary protocol if the server supports it
+                    client.sendNewGame(shape[0], shape[1]);
+                    client.sendLevel(levelBox.getValue().name());
                     Platform.runLater(() -> status.setText("Connected to server!"));
                 } catch (Exception ex) {
                     ex.printStackTrace();
@@ -120,6 +155,42 @@ public class MainApp extends Application {
             }).start();
         });
 
+        pvpBtn.setOnAction(e -> {
+            TextInputDialog d = new TextInputDialog("player");
+            d.setHeaderText("Play another human online");
+            d.setContentText("Your name:");
+            String name = d.showAndWait().map(String::trim).orElse(null);
+            if (name == null) return;
+
+            onlineSaveMode = false;
+            pvpMode = true;
+            closeClient();
+            useBoard(BOARD_SHAPES[0]); // matchmaking is 3x3 only
+            backend.reset();
+            status.setText("Connecting to server...");
+            updateUI();
+            primaryStage.setScene(gameScene);
+
+            new Thread(() -> {
+                try {
+                    client = new Client("localhost", 5000, (board, winner) -> Platform.runLater(() -> {
+                        if (!pvpMode) return;
+                        backend.setState(board, winner);
+                        updateUI();
+                        if (winner != ' ') handleEnd();
+                        else status.setText(isMyTurn() ? "Your turn (" + mySymbol + ")" : "Opponent's turn...");
+                    }), event -> Platform.runLater(() -> onMatchEvent(event)), false); // matchmaking notices are text lines
+                    client.sendQueue(name.isEmpty() ? "guest" : name, 0);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    Platform.runLater(() -> {
+                        status.setText("⚠️ Could not connect to server");
+                        pvpMode = false;
+                    });
+                }
+            }).start();
+        });
+
         leaderboardBtn.setOnAction(e -> showLeaderboard());
 
         musicBtn.setOnAction(e -> toggleMusic(musicBtn));
@@ -130,39 +201,23 @@ public class MainApp extends Application {
         bottomRow.setPadding(new Insets(80));
 
         // Menu layout
-        VBox menuLayout = new VBox(20, offlineBtn, onlineBtn, leaderboardBtn, bottomRow);
+        VBox menuLayout = new VBox(20, offlineBtn, onlineBtn, pvpBtn, leaderboardBtn, levelRow, bottomRow);
         menuLayout.setPadding(new Insets(40));
         menuLayout.setStyle("-fx-background-color: linear-gradient(lightblue, lightgreen);");
-        menuScene = new Scene(menuLayout, 400, 400);
+        menuScene = new Scene(menuLayout, 400, 470);
 
         // ==== GAME screen ====
-        GridPane grid = new GridPane();
-        grid.setHgap(5);  // horizontal gap between cells
-        grid.setVgap(5);  // vertical gap between cells
         grid.setPadding(new Insets(10));
-        Font cellFont = Font.font("Arial Black", 28);
-
-        for (int i = 0; i < 9; i++) {
-            Button b = new Button("-");
-            b.setFont(cellFont);
-            b.setTextFill(Color.DARKBLUE);
-            b.setPrefSize(90, 90);
-            b.setStyle("-fx-background-color: #e0f7fa; -fx-border-color: black; -fx-border-width: 2px;");
-
-            final int pos = i;
-            b.setOnAction(ev -> {
-                if (onlineSaveMode && client != null) {
-                    client.sendMove(pos); // send to server
-                } else {
-                    onCellClick(pos); // offline mode
-                }
-            });
-            cells[i] = b;
-            grid.add(b, i % 3, i / 3);
-        }
+        buildGrid(3);
 
         Button backBtn = new Button("⬅️ Back to Menu");
-        backBtn.setOnAction(e -> primaryStage.setScene(menuScene));
+        backBtn.setOnAction(e -> {
+            if (pvpMode) { // leaving a human game gives it up, so hang up right away
+                pvpMode = false;
+                closeClient();
+            }
+            primaryStage.setScene(menuScene);
+        });
 
         status.setFont(Font.font("Verdana", 16));
         status.setTextFill(Color.DARKRED);
@@ -178,6 +233,47 @@ public class MainApp extends Application {
         primaryStage.show();
     }
 
+    // switch to a size x size board (k in a row) if the current engine has another shape
+    private void useBoard(int[] shape) {
+        if (backend.getSize() != shape[0] || backend.getWinLength() != shape[1]) {
+            backend = GameEngine.create(shape[0], shape[1]);
+        }
+        if (cells.length != shape[0] * shape[0]) buildGrid(shape[0]);
+    }
+
+    // (re)create the n x n buttons; cells shrink on big boards so the window still fits
+    private void buildGrid(int n) {
+        grid.getChildren().clear();
+        grid.setHgap(n <= 3 ? 5 : 1);  // horizontal gap between cells
+        grid.setVgap(n <= 3 ? 5 : 1);  // vertical gap between cells
+        int cellPx = n <= 3 ? 90 : Math.max(18, 290 / n);
+        Font cellFont = Font.font("Arial Black", n <= 3 ? 28 : cellPx * 0.45);
+
+        cells = new Button[n * n];
+        for (int i = 0; i < cells.length; i++) {
+            Button b = new Button("-");
+            b.setFont(cellFont);
+            b.setTextFill(Color.DARKBLUE);
+            b.setPrefSize(cellPx, cellPx);
+            b.setMinSize(cellPx, cellPx);
+            if (n > 3) b.setPadding(Insets.EMPTY);
+            b.setStyle("-fx-background-color: #e0f7fa; -fx-border-color: black; -fx-border-width: 2px;");
+
+            final int pos = i;
+            b.setOnAction(ev -> {
+                if (pvpMode && backend.isGameOver()) {
+                    status.setText("Game over: back to the menu for a new match.");
+                } else if ((onlineSaveMode || pvpMode) && client != null) {
+                    client.sendMove(pos); // send to server
+                } else {
+                    onCellClick(pos); // offline mode
+                }
+            });
+            cells[i] = b;
+            grid.add(b, i % n, i / n);
+        }
+    }
+
     private void toggleMusic(Button musicBtn) {
         if (mediaPlayer == null) return;
         if (musicOn) {
@@ -226,30 +322,56 @@ public class MainApp extends Application {
         if (backend.isGameOver()) handleEnd();
     }
 
+    // QUEUED / MATCH:X,bob / END:timeout|opponent-left from the server (pvp only)
+    private void onMatchEvent(String event) {
+        if (!pvpMode) return;
+        if (event.equals("QUEUED")) {
+            status.setText("Waiting for an opponent...");
+        } else if (event.startsWith("MATCH:")) {
+            mySymbol = event.charAt(6);
+            String opponent = event.length() > 8 ? event.substring(8) : "?";
+            status.setText("Playing " + opponent + ", you are " + mySymbol + (mySymbol == 'X' ? ": your turn" : ""));
+        } else if (event.equals("END:timeout")) {
+            status.setText(status.getText() + " (time ran out)");
+        } else if (event.equals("END:opponent-left")) {
+            status.setText(status.getText() + " (opponent left)");
+        }
+    }
+
+    private boolean isMyTurn() {
+        int moves = 0;
+        for (char c : backend.getBoard()) if (c != '-') moves++;
+        return (moves % 2 == 0) == (mySymbol == 'X');
+    }
+
+    private void closeClient() {
+        if (client != null) client.close();
+        client = null;
+    }
+
     private void handleEnd() {
         char w = backend.getWinner();
+        if (pvpMode) {
+            if (w == mySymbol) status.setText("🎉 You win!");
+            else if (w == 'D') status.setText("🤝 Draw.");
+            else status.setText("😞 Opponent wins.");
+            return;
+        }
         if (w == 'X') status.setText("🎉 You win!");
         else if (w == 'O') status.setText("💻 CPU wins.");
         else status.setText("🤝 Draw.");
 
-        if (onlineSaveMode && w == 'X' && db != null) {
+        if (onlineSaveMode && w == 'X' && leaderboard != null) {
             TextInputDialog d = new TextInputDialog("player");
             d.setHeaderText("You won! Enter name to save score:");
             d.setContentText("Name:");
-            d.showAndWait().ifPresent(name -> {
-                try {
-                    db.addWin(name.trim());
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                    status.setText("DB save failed");
-                }
-            });
+            d.showAndWait().ifPresent(name -> leaderboard.addWin(name.trim()));
         }
     }
 
     private void updateUI() {
         char[] b = backend.getBoard();
-        for (int i = 0; i < 9; i++) {
+        for (int i = 0; i < cells.length; i++) {
             cells[i].setText(String.valueOf(b[i]));
             if (b[i] == 'X')
                 cells[i].setStyle("-fx-background-color: lightgreen; -fx-border-color: black; -fx-border-width: 2px;");
@@ -260,25 +382,21 @@ public class MainApp extends Application {
     }
 
     private void showLeaderboard() {
-        if (db == null) {
+        if (leaderboard == null) {
             status.setText("DB unavailable");
             return;
         }
-        try {
-            List<String> board = db.getLeaderboard();
-            Alert a = new Alert(Alert.AlertType.INFORMATION);
-            a.setTitle("Leaderboard");
-            a.setHeaderText("Top players");
-            a.setContentText(String.join("\n", board.isEmpty() ? List.of("(no records)") : board));
-            a.showAndWait();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            status.setText("DB read error");
-        }
+        List<String> board = leaderboard.getLeaderboard();
+        Alert a = new Alert(Alert.AlertType.INFORMATION);
+        a.setTitle("Leaderboard");
+        a.setHeaderText("Top players");
+        a.setContentText(String.join("\n", board.isEmpty() ? List.of("(no records)") : board));
+        a.showAndWait();
     }
 
     @Override
     public void stop() throws Exception {
+        if (leaderboard != null) leaderboard.close(); // flush pending wins first
         if (db != null) db.close();
         if (mediaPlayer != null) mediaPlayer.stop();
         super.stop();
@@ -0,0 +1,84 @@
+package network;
+
+/**
+ * Compact binary encoding for the game server, negotiated with a "PROTO:BIN" line.
+ *
+ * Server -> client board frame: byte 0 = board side n, then a little-endian bit stream of
+ * winner (2 bits: 0 none, 1 X, 2 O, 3 draw), sequence number (4 bits) and n*n cells
+ * (2 bits each: 0 empty, 1 X, 2 O). A 3x3 board is 4 bytes instead of the 12-byte text line.
+ *
+ * Client -> server commands start with a byte >= 0x80 so they can be told apart from text lines:
+ * MOVE = 0x81 hi lo, NEW = 0x82 size k, LEVEL = 0x83 ordinal.
+ */
+final class BinaryProtocol {
+    static final String HELLO = "PROTO:BIN";
+
+    static final int OP_MOVE = 0x81;
+    static final int OP_NEW = 0x82;
+    static final int OP_LEVEL = 0x83;
+    static final int SEQ_MASK = 0xF;
+
+    private static final char[] SYMBOLS = {'-', 'X', 'O', '-'};
+    private static final char[] WINNERS = {' ', 'X', 'O', 'D'};
+    // 2-bit code per board char ('X' -> 1, 'O' -> 2, anything else -> 0)
+    private static final byte[] CODES = new byte[128];
+    static {
+        CODES['X'] = 1;
+        CODES['O'] = 2;
+    }
+
+    private BinaryProtocol() { }
+
+    /** Total frame size for an n x n board, header byte included. */
+    static int frameLength(int n) {
+        return 1 + (6 + 2 * n * n + 7) / 8;
+    }
+
+    static byte[] encodeBoard(char[] board, int n, char winner, int seq) {
+        byte[] frame = new byte[frameLength(n)];
+        frame[0] = (byte) n;
+        int w = winner == 'D' ? 3 : CODES[winner & 0x7F];
+        int cells = n * n;
+        // first payload byte: winner, seq and cell 0; then 4 cells per byte
+        frame[1] = (byte) (w | (seq & SEQ_MASK) << 2 | (cells > 0 ? CODES[board[0] & 0x7F] << 6 : 0));
+        for (int i = 1, out = 2; i < cells; i += 4, out++) {
+            int b = CODES[board[i] & 0x7F];
+            if (i + 1 < cells) b |= CODES[board[i + 1] & 0x7F] << 2;
+            if (i + 2 < cells) b |= CODES[board[i + 2] & 0x7F] << 4;
+            if (i + 3 < cells) b |= CODES[board[i + 3] & 0x7F] << 6;
+            frame[out] = (byte) b;
+        }
+        return frame;
+    }
+
+    static int side(byte[] frame) { return frame[0] & 0xFF; }
+    static char winner(byte[] frame) { return WINNERS[frame[1] & 0x3]; }
+    static int seq(byte[] frame) { return (frame[1] >>> 2) & SEQ_MASK; }
+
+    /** Unpack the cells of a board frame into out (length n*n). */
+    static void decodeCells(byte[] frame, char[] out) {
+        if (out.length == 0) return;
+        out[0] = SYMBOLS[(frame[1] >>> 6) & 0x3];
+        for (int i = 1, in = 2; i < out.length; in++) {
+            int b = frame[in];
+            for (int shift = 0; shift < 8 && i < out.length; shift += 2) out[i++] = SYMBOLS[(b >>> shift) & 0x3];
+        }
+    }
+
+    static byte[] move(int pos) { return new byte[]{(byte) OP_MOVE, (byte) (pos >>> 8), (byte) pos}; }
+    static byte[] newGame(int size, int k) { return new byte[]{(byte) OP_NEW, (byte) size, (byte) k}; }
+    static byte[] level(int ordinal) { return new byte[]{(byte) OP_LEVEL, (byte) ordinal}; }
+
+    /** Argument bytes that follow a command opcode (-1 if unknown). */
+    static int argLength(int op) {
+        switch (op) {
+            case OP_MOVE:
+            case OP_NEW:
+                return 2;
+            case OP_LEVEL:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+}
@@ -1,44 +1,145 @@
 package network;
 
 
+import backEnd.Difficulty;
+
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class Client {
     private final Socket socket;
-    private final PrintWriter out;
-    private final BufferedReader in;
+    private final OutputStream out;
+    private final InputStream in;
 
     // callback: (board, winner) -> {}
     private final BiConsumer<char[], Character> onUpdate;
+    // matchmaking notices: QUEUED, MATCH:X|O,opponent, END:reason (text protocol only)
+    private final Consumer<String> onEvent;
+
+    // set once the server acknowledged PROTO:BIN; from then on both directions are binary
+    private volatile boolean binary;
 
     public Client(String serverIp, int port, BiConsumer<char[], Character> onUpdate) throws IOException {
+        this(serverIp, port, onUpdate, false);
+    }
+
+    // preferBinary: ask for the compact binary protocol, old servers just keep talking text
+    public Client(String serverIp, int port, BiConsumer<char[], Character> onUpdate, boolean preferBinary) throws IOException {
+        this(serverIp, port, onUpdate, event -> { }, preferBinary);
+    }
+
+    public Client(String serverIp, int port, BiConsumer<char[], Character> onUpdate, Consumer<String> onEvent,
+                  boolean preferBinary) throws IOException {
         this.socket = new Socket(serverIp, port);
-        this.out = new PrintWriter(socket.getOutputStream(), true);
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.in = new BufferedInputStream(socket.getInputStream());
         this.onUpdate = onUpdate;
+        this.onEvent = onEvent;
 
         listen();
+        if (preferBinary) sendLine(BinaryProtocol.HELLO);
     }
 
     private void listen() {
         new Thread(() -> {
             try {
-                String msg;
-                while ((msg = in.readLine()) != null) {
+                while (true) {
+                    if (binary) {
+                        // binary board frame: side byte, then packed cells
+                        int n = in.read();
+                        if (n < 0) break;
+                        byte[] frame = new byte[BinaryProtocol.frameLength(n)];
+                        frame[0] = (byte) n;
+                        readFully(frame, 1);
+                        char[] board = new char[n * n];
+                        BinaryProtocol.decodeCells(frame, board);
+                        onUpdate.accept(board, BinaryProtocol.winner(frame));
+                        continue;
+                    }
+                    String msg = readLine();
+                    if (msg == null) break;
+                    if (msg.equals(BinaryProtocol.HELLO)) {
+                        binary = true;
+                        continue;
+                    }
+                    if (msg.equals("QUEUED") || msg.startsWith("MATCH:") || msg.startsWith("END:")) {
+                        onEvent.accept(msg);
+                        continue;
+                    }
                     String[] parts = msg.split(",");
                     char[] board = parts[0].toCharArray();
                     char winner = parts[1].charAt(0);
                     onUpdate.accept(board, winner);
                 }
             } catch (IOException e) {
-                e.printStackTrace();
+                if (!socket.isClosed()) e.printStackTrace();
             }
         }).start();
     }
 
     public void sendMove(int pos) {
-        out.println("MOVE:" + pos);
+        if (binary) send(BinaryProtocol.move(pos));
+        else sendLine("MOVE:" + pos);
+    }
+
+    // restart the server-side game on a size x size board, winLength in a row
+    public void sendNewGame(int size, int winLength) {
+        if (binary) send(BinaryProtocol.newGame(size, winLength));
+        else sendLine("NEW:" + size + "," + winLength);
+    }
+
+    // restart the server-side game with this CPU level (RANDOM / GREEDY / PERFECT)
+    public void sendLevel(String level) {
+        if (binary) send(BinaryProtocol.level(Difficulty.parse(level, Difficulty.RANDOM).ordinal()));
+        else sendLine("LEVEL:" + level);
+    }
+
+    // wait for a human opponent; rating <= 0 lets the server use its default
+    public void sendQueue(String name, int rating) {
+        String n = name.replace(",", " ").trim();
+        sendLine(rating > 0 ? "QUEUE:" + n + "," + rating : "QUEUE:" + n);
+    }
+
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void sendLine(String line) {
+        send((line + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void send(byte[] bytes) {
+        synchronized (out) {
+            try {
+                out.write(bytes);
+                out.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // ASCII line without the trailing newline, null at end of stream
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') sb.append((char) c);
+        }
+        return c == -1 && sb.length() == 0 ? null : sb.toString();
+    }
+
+    private void readFully(byte[] buf, int from) throws IOException {
+        for (int off = from; off < buf.length; ) {
+            int n = in.read(buf, off, buf.length - off);
+            if (n < 0) throw new EOFException("server closed mid-frame");
+            off += n;
+        }
     }
 }
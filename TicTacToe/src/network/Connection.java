@@ -0,0 +1,16 @@
+package network;
+
+/** Outgoing side of one client connection, independent of blocking / NIO transport. */
+interface Connection {
+    // queue one protocol line (newline is added by the transport)
+    void send(String line);
+
+    // queue one binary frame as is
+    void send(byte[] frame);
+
+    // queue a full board for a spectator; replaces the previous one if that hasn't started going out
+    // (returns true then). Never blocks, so a slow viewer only ever has one board waiting
+    boolean sendLatest(byte[] frame);
+
+    void close();
+}
@@ -0,0 +1,368 @@
+package network;
+
+import DB.GameRecord;
+import DB.GameRecorder;
+import DB.RatingService;
+import backEnd.Difficulty;
+import backEnd.GameEngine;
+import backEnd.MoveLog;
+import metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Protocol of the game server, shared by the thread-per-connection and NIO transports.
+ * Client -> server: text lines MOVE:n, NEW:size,k[,seed], LEVEL:random|greedy|perfect, PROTO:BIN,
+ *                   QUEUE[:name[,rating]], or the binary commands of BinaryProtocol (first byte >= 0x80)
+ * Server -> client: "board,winner" lines, or binary board frames once PROTO:BIN was acknowledged
+ * Bytes are fed in one at a time, so text and binary commands can be mixed on one stream.
+ *
+ * QUEUE asks the Matchmaker for a human opponent on 3x3, near the given rating (default: the player's Elo). Text sessions then get QUEUED, MATCH:X|O,opponent
+ * and, when the game ends early, END:timeout|opponent-left; binary sessions only see the board frames.
+ * While in a Room, MOVE goes to the shared game; NEW / LEVEL / QUEUE again give the room up (the opponent wins).
+ * After the room ends the connection is back on a fresh game against the CPU.
+ *
+ * Spectating (see Spectators): WATCH lists the most watched games as GAMES:id=viewers,... (r<n> rooms,
+ * g<n> games against the CPU); WATCH:id leaves any room or queue, answers WATCHING:id (NOGAME:id if
+ * it's gone) and from then on the connection receives that game's boards, in its own format, instead
+ * of its own. A slow viewer skips boards rather than queueing them. UNWATCH or any other command
+ * stops watching; text viewers get UNWATCHED:id, also when the game ends.
+ */
+class GameProtocol {
+    private static final int MAX_LINE = 256;
+    private static final int MAX_NAME = 32;
+    private static final int DEFAULT_RATING = 1200;
+
+    private static final Metrics.Gauge CONNECTIONS =
+            Metrics.gauge("ttt_socket_connections_active", "Open game server connections");
+    private static final Metrics.Histogram[] CPU_MOVE = new Metrics.Histogram[Difficulty.values().length];
+    private static final String CMD_SECONDS = "ttt_socket_command_duration_seconds";
+    private static final String CMD_HELP = "Time to handle one command, reply included";
+    private static final Metrics.Histogram MOVE = Metrics.histogram(CMD_SECONDS, CMD_HELP, "command", "move");
+    private static final Metrics.Histogram NEW = Metrics.histogram(CMD_SECONDS, CMD_HELP, "command", "new");
+    private static final Metrics.Histogram LEVEL = Metrics.histogram(CMD_SECONDS, CMD_HELP, "command", "level");
+    static {
+        for (Difficulty d : Difficulty.values()) {
+            CPU_MOVE[d.ordinal()] = Metrics.histogram("ttt_cpu_move_duration_seconds",
+                    "Time the server spends computing one CPU move", "level", d.name().toLowerCase());
+        }
+    }
+
+    // finished games go to the games table through this (null = not recorded), see Server
+    private static volatile GameRecorder recorder;
+    // Elo of named players (PvP rooms); also the default matchmaking rating
+    private static volatile RatingService ratings;
+
+    private final Connection conn;
+    private GameEngine backend = GameEngine.create(3, 3);
+    private long startedAt = System.currentTimeMillis();
+    private volatile boolean binary; // read by the fan-out thread
+    private int seq;
+    // matchmaking: at most one of ticket (waiting) / room (playing) is set; the matcher thread sets them too
+    private volatile Matchmaker.Ticket ticket;
+    private volatile Room room;
+    // this session's game as others see it, listed until onDisconnect
+    private final Spectators channel = Spectators.open("g");
+    // game being watched and the last of its frames sent here (null = own game); swapped whole with CAS,
+    // so the fan-out thread never takes this session's monitor, which a blocked send() may be holding
+    private final AtomicReference<Watching> watching = new AtomicReference<>();
+
+    private static final class Watching {
+        final Spectators channel;
+        final long seq;
+
+        Watching(Spectators channel, long seq) {
+            this.channel = channel;
+            this.seq = seq;
+        }
+    }
+
+    // decoder state: partial text line, or pending binary command
+    private final StringBuilder line = new StringBuilder();
+    private int op = -1, argsLeft;
+    private final int[] args = new int[2];
+
+    GameProtocol(Connection conn) {
+        this.conn = conn;
+    }
+
+    static void setRecorder(GameRecorder r) { recorder = r; }
+
+    static void setRatings(RatingService r) { ratings = r; }
+
+    // rate a finished game and queue it for the games table (each part a no-op when turned off)
+    static void record(GameRecord game) {
+        RatingService rs = ratings;
+        if (rs != null) rs.recordGame(game.playerX, game.playerO, game.winner);
+        GameRecorder r = recorder;
+        if (r != null) r.record(game);
+    }
+
+    // whether t is still this session's place in the queue (the matcher re-queues it only then)
+    boolean holds(Matchmaker.Ticket t) { return ticket == t; }
+
+    void onConnect() {
+        CONNECTIONS.inc();
+        sendBoard();
+    }
+
+    /** Feed one received byte (0..255). */
+    void onByte(int b) {
+        if (op >= 0) {
+            args[args.length - argsLeft] = b;
+            if (--argsLeft == 0) {
+                int cmd = op;
+                op = -1;
+                onCommand(cmd);
+            }
+        } else if (b >= 0x80 && line.length() == 0) {
+            int n = BinaryProtocol.argLength(b);
+            if (n > 0) {
+                op = b;
+                argsLeft = n;
+            }
+        } else if (b == '\n') {
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') line.setLength(end - 1);
+            String msg = line.toString();
+            line.setLength(0);
+            onLine(msg);
+        } else if (line.length() < MAX_LINE) {
+            line.append((char) b); // text protocol is plain ASCII
+        }
+    }
+
+    void onLine(String msg) {
+        if (msg.equals("WATCH")) {
+            sendEvent("GAMES:" + Spectators.list());
+            return;
+        }
+        if (msg.startsWith("WATCH:")) {
+            watch(msg.substring(6).trim());
+            return;
+        }
+        unwatch(true);
+        if (msg.startsWith("MOVE:")) {
+            try {
+                int pos = Integer.parseInt(msg.substring(5).trim());
+                Room r = room;
+                if (r != null) r.move(this, pos);
+                else move(pos);
+            } catch (NumberFormatException e) {
+                System.err.println("Bad MOVE command: " + msg);
+                sendBoard();
+            }
+        } else if (msg.startsWith("NEW:")) {
+            // NEW:size,k -> fresh N x N game, K in a row, same CPU level; NEW:size,k,seed replays a logged game
+            String[] dims = msg.substring(4).split(",");
+            try {
+                Long seed = dims.length > 2 ? Long.valueOf(dims[2].trim()) : null;
+                newGame(Integer.parseInt(dims[0].trim()), Integer.parseInt(dims[1].trim()), seed);
+            } catch (RuntimeException e) {
+                System.err.println("Bad NEW command: " + msg);
+                sendBoard();
+            }
+        } else if (msg.equals("QUEUE") || msg.startsWith("QUEUE:")) {
+            // QUEUE[:name[,rating]]
+            String[] p = msg.length() > 6 ? msg.substring(6).split(",") : new String[0];
+            String name = p.length > 0 && !p[0].trim().isEmpty() ? p[0].trim() : "guest";
+            if (name.length() > MAX_NAME) name = name.substring(0, MAX_NAME);
+            RatingService rs = ratings;
+            int rating = rs != null ? (int) Math.round(rs.getRating(name)) : DEFAULT_RATING;
+            try {
+                if (p.length > 1) rating = Integer.parseInt(p[1].trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Bad QUEUE rating: " + msg);
+            }
+            queue(name, rating);
+        } else if (msg.startsWith("LEVEL:")) {
+            level(Difficulty.parse(msg.substring(6), backend.getDifficulty()));
+        } else if (msg.equals(BinaryProtocol.HELLO)) {
+            // acknowledge in text, everything after this line is binary frames
+            synchronized (this) {
+                conn.send(BinaryProtocol.HELLO);
+                binary = true;
+            }
+            sendBoard();
+        }
+    }
+
+    private void onCommand(int cmd) {
+        unwatch(true);
+        switch (cmd) {
+            case BinaryProtocol.OP_MOVE:
+                Room r = room;
+                if (r != null) r.move(this, args[0] << 8 | args[1]);
+                else move(args[0] << 8 | args[1]);
+                break;
+            case BinaryProtocol.OP_NEW:
+                try {
+                    newGame(args[0], args[1], null);
+                } catch (IllegalArgumentException e) {
+                    sendBoard();
+                }
+                break;
+            case BinaryProtocol.OP_LEVEL:
+                Difficulty[] levels = Difficulty.values();
+                level(args[0] < levels.length ? levels[args[0]] : backend.getDifficulty());
+                break;
+            default:
+                break;
+        }
+    }
+
+    void onDisconnect() {
+        leaveMatch();
+        unwatch(false);
+        channel.close(backend.getBoard(), backend.getSize(), backend.getWinner());
+        CONNECTIONS.dec();
+    }
+
+    private void queue(String name, int rating) {
+        leaveMatch();
+        // set before the matcher can see it: it may pair the ticket (joinRoom) or check holds() right away
+        Matchmaker.Ticket t = new Matchmaker.Ticket(this, name, rating);
+        ticket = t;
+        sendEvent("QUEUED");
+        Matchmaker.get().enqueue(t);
+    }
+
+    // drop out of the queue / give up the current room
+    private void leaveMatch() {
+        Matchmaker.Ticket t = ticket;
+        if (t != null) {
+            ticket = null; // before cancel(), see Matchmaker.pair
+            t.cancel();
+        }
+        Room r = room;
+        if (r != null) r.leave(this);
+    }
+
+    // called by the Matchmaker / Room, under the room's lock
+    void joinRoom(Room r) {
+        ticket = null;
+        room = r;
+    }
+
+    void leaveRoom(Room r) {
+        if (room != r) return;
+        backend.reset();
+        startedAt = System.currentTimeMillis();
+        room = null;
+    }
+
+    private void move(int pos) {
+        long start = System.nanoTime();
+        // the engines place symbols on a finished board too; refusing here keeps recordResult once per game
+        boolean ok = !backend.isGameOver() && backend.playerMove(pos);
+        if (ok && !backend.isGameOver()) {
+            long cpuStart = System.nanoTime();
+            backend.computerMove(); // CPU plays
+            CPU_MOVE[backend.getDifficulty().ordinal()].observeSince(cpuStart);
+        }
+        if (ok && backend.isGameOver()) recordResult();
+        sendBoard();
+        MOVE.observeSince(start);
+    }
+
+    // seed null = random; the seed is saved with the game's record either way, so it can be replayed
+    private void newGame(int size, int k, Long seed) {
+        long start = System.nanoTime();
+        leaveMatch();
+        try {
+            GameEngine next = GameEngine.create(size, k);
+            next.setDifficulty(backend.getDifficulty());
+            if (seed != null) next.setSeed(seed);
+            backend = next;
+            startedAt = System.currentTimeMillis();
+            sendBoard();
+        } finally {
+            NEW.observeSince(start);
+        }
+    }
+
+    // new game at the requested CPU strength
+    private void level(Difficulty d) {
+        long start = System.nanoTime();
+        leaveMatch();
+        backend.reset();
+        backend.setDifficulty(d);
+        startedAt = System.currentTimeMillis();
+        sendBoard();
+        LEVEL.observeSince(start);
+    }
+
+    // queue the game that just ended; move() refuses moves once the game is over, so this runs once per game
+    private void recordResult() {
+        if (recorder == null) return; // guest vs CPU isn't rated, so the history is all there is to do
+        MoveLog log = backend.getMoveLog();
+        int[] moves = new int[log.size()];
+        for (int i = 0; i < moves.length; i++) moves[i] = log.pos(i);
+        long now = System.currentTimeMillis();
+        record(new GameRecord("guest", "cpu:" + backend.getDifficulty().name().toLowerCase(),
+                backend.getWinner(), backend.getSize(), backend.getWinLength(), backend.getSeed(),
+                moves, startedAt, now - startedAt));
+    }
+
+    // own game changed (or was asked for): to the player and to its spectators
+    private void sendBoard() {
+        channel.publish(backend.getBoard(), backend.getSize(), backend.getWinner());
+        sendBoard(backend.getBoard(), backend.getSize(), backend.getWinner());
+    }
+
+    // synchronized: a Room sends from the opponent's thread / the scheduler too
+    synchronized void sendBoard(char[] b, int size, char winner) {
+        if (watching.get() != null) return; // the screen shows someone else's game
+        if (binary) {
+            conn.send(BinaryProtocol.encodeBoard(b, size, winner, seq++));
+        } else {
+            conn.send(new String(b) + "," + winner);
+        }
+    }
+
+    private void watch(String id) {
+        leaveMatch();
+        Spectators s = Spectators.find(id);
+        if (s == null || s == channel) {
+            unwatch(true);
+            sendEvent("NOGAME:" + id);
+            return;
+        }
+        synchronized (this) {
+            unwatch(false);
+            sendEvent("WATCHING:" + id); // before any frame: the fan-out finds this session only after add()
+            watching.set(new Watching(s, -1));
+        }
+        Spectators.Frame current = s.add(this);
+        if (current != null) deliver(s, current);
+        else if (Spectators.find(id) == null) unwatch(true); // ended meanwhile
+    }
+
+    // stop watching; tell text sessions when asked to (not on disconnect / switching games)
+    private synchronized void unwatch(boolean notify) {
+        Watching w = watching.getAndSet(null);
+        if (w == null) return;
+        w.channel.remove(this);
+        if (notify) sendEvent("UNWATCHED:" + w.channel.getId());
+    }
+
+    /**
+     * Fan-out thread (or watch()): pass on a frame of the watched game unless it's stale or this
+     * session moved on. Returns false if nothing was sent. Lock-free: sendLatest never blocks, and
+     * the fan-out must not wait behind a player's own send() on a slow socket.
+     */
+    boolean deliver(Spectators s, Spectators.Frame f) {
+        Watching w;
+        do {
+            w = watching.get();
+            if (w == null || w.channel != s || f.seq <= w.seq) return false;
+        } while (!watching.compareAndSet(w, f.last ? null : new Watching(s, f.seq))); // the final frame carries UNWATCHED itself
+        if (conn.sendLatest(binary ? f.binary() : f.text())) Spectators.replaced();
+        return true;
+    }
+
+    // matchmaking notice; binary sessions can't take text lines between frames, so they only get boards
+    synchronized void sendEvent(String line) {
+        if (!binary) conn.send(line);
+    }
+}
@@ -0,0 +1,178 @@
+package network;
+
+import metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pairs players who sent QUEUE into two-player Rooms.
+ * - Connection threads only offer a Ticket to a lock-free inbox and poke the scheduler; they never wait
+ * - One scheduler thread does all the pairing, plus the rooms' turn timeouts, so pairing
+ *   needs no locks and costs O(1) per pair however many players are waiting
+ * - Players are grouped by rating band and paired inside their band first; a player who waited
+ *   longer than widenMillis per band of distance is paired with the nearest band that has someone
+ */
+final class Matchmaker {
+    private static final int BAND_WIDTH = 200; // rating points per band
+    private static final int BANDS = 16;       // 0..3200, the rest is clamped into the edge bands
+
+    private static final Metrics.Histogram WAIT = Metrics.histogram("ttt_match_wait_seconds",
+            "Time from QUEUE to being paired");
+    private static final AtomicInteger WAITING = new AtomicInteger();
+    static {
+        Metrics.gauge("ttt_match_waiting", "Players queued for an opponent", WAITING::get);
+    }
+
+    /** One queued player. Either the matcher claims it or its connection cancels it, never both. */
+    static final class Ticket {
+        final GameProtocol player;
+        final String name;
+        final int rating;
+        final long queuedAt = System.nanoTime();
+        private final AtomicBoolean live = new AtomicBoolean(true);
+
+        Ticket(GameProtocol player, String name, int rating) {
+            this.player = player;
+            this.name = name;
+            this.rating = rating;
+        }
+
+        boolean isLive() { return live.get(); }
+
+        /** Leave the queue; false if the ticket was already paired (or cancelled). */
+        boolean cancel() {
+            if (!live.compareAndSet(true, false)) return false;
+            WAITING.decrementAndGet();
+            return true;
+        }
+
+        // matcher side of cancel(): the ticket is taken for a room
+        private boolean claim() { return cancel(); }
+    }
+
+    // one instance per server process, created on first QUEUE so plain CPU games never start its thread
+    private static final class Holder {
+        static final Matchmaker INSTANCE = new Matchmaker(
+                Long.getLong("ttt.match.widenMillis", 5_000),
+                Long.getLong("ttt.match.turnSeconds", 30) * 1000);
+    }
+
+    static Matchmaker get() { return Holder.INSTANCE; }
+
+    private final long widenNanos;
+    private final long turnTimeoutMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentLinkedQueue<Ticket> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean matchPending = new AtomicBoolean();
+    // scheduler thread only
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Ticket>[] bands = new ArrayDeque[BANDS];
+
+    Matchmaker(long widenMillis, long turnTimeoutMillis) {
+        this.widenNanos = TimeUnit.MILLISECONDS.toNanos(widenMillis);
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        for (int i = 0; i < BANDS; i++) bands[i] = new ArrayDeque<>();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Matchmaker");
+            t.setDaemon(true);
+            return t;
+        });
+        // waiting players drift into wider bands even when nobody new arrives
+        long period = Math.max(100, widenMillis / 2);
+        scheduler.scheduleWithFixedDelay(this::requestMatch, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Queue a player's new ticket; it can be cancelled until the player is paired. */
+    void enqueue(Ticket t) {
+        WAITING.incrementAndGet();
+        inbox.offer(t);
+        requestMatch();
+    }
+
+    /** Run task on the scheduler thread after delayMillis (turn timeouts). */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    long turnTimeoutMillis() { return turnTimeoutMillis; }
+
+    // at most one pairing pass queued at a time; a burst of QUEUEs is handled by one pass
+    private void requestMatch() {
+        if (matchPending.compareAndSet(false, true)) scheduler.execute(this::match);
+    }
+
+    private void match() {
+        matchPending.set(false);
+        Ticket t;
+        while ((t = inbox.poll()) != null) bands[band(t.rating)].add(t);
+
+        // same band first, oldest pairs first
+        for (ArrayDeque<Ticket> band : bands) {
+            Ticket waiting = null;
+            while (!band.isEmpty()) {
+                Ticket next = band.poll();
+                if (!next.isLive()) continue;
+                if (waiting == null) waiting = next;
+                else if (pair(waiting, next)) waiting = null;
+                else if (!waiting.isLive()) waiting = next;
+            }
+            if (waiting != null && waiting.isLive()) band.add(waiting);
+        }
+
+        // every band now holds at most one player: join neighbours that have waited long enough
+        long now = System.nanoTime();
+        int prevBand = -1;
+        for (int i = 0; i < BANDS; i++) {
+            Ticket cur = bands[i].peek();
+            if (cur == null) continue;
+            if (prevBand >= 0) {
+                Ticket prev = bands[prevBand].peek();
+                long needed = widenNanos * (i - prevBand);
+                if (now - prev.queuedAt >= needed && now - cur.queuedAt >= needed) {
+                    bands[prevBand].clear();
+                    bands[i].clear();
+                    if (!pair(prev, cur)) {
+                        // one of them left meanwhile; the other keeps its place
+                        if (prev.isLive()) bands[prevBand].add(prev);
+                        if (cur.isLive()) bands[i].add(cur);
+                    }
+                    prevBand = bands[i].isEmpty() ? -1 : i;
+                    continue;
+                }
+            }
+            prevBand = i;
+        }
+    }
+
+    // open a room for a and b unless one of them cancelled; the longer waiter plays X
+    private boolean pair(Ticket a, Ticket b) {
+        if (!a.claim()) return false;
+        if (!b.claim()) {
+            // a was taken out of the queue for nothing: put it back in line, unless its player let go
+            // of it meanwhile (hung up, LEAVE, QUEUE again). The player clears its ticket before
+            // calling cancel(), so either that cancel() comes after the revival and succeeds, or we
+            // see the cleared ticket here and drop it ourselves
+            WAITING.incrementAndGet();
+            a.live.set(true);
+            if (!a.player.holds(a)) a.cancel();
+            return false;
+        }
+        long now = System.nanoTime();
+        WAIT.observeNanos(now - a.queuedAt);
+        WAIT.observeNanos(now - b.queuedAt);
+        Ticket first = a.queuedAt <= b.queuedAt ? a : b, second = first == a ? b : a;
+        new Room(this, first.player, first.name, second.player, second.name).start();
+        return true;
+    }
+
+    private static int band(int rating) {
+        return Math.max(0, Math.min(BANDS - 1, rating / BAND_WIDTH));
+    }
+}
@@ -0,0 +1,240 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-threaded Selector event loop for the game server.
+ * Each connection keeps its own read buffer, protocol decoder and a queue of
+ * pending writes, so thousands of idle players cost a few KB each instead of a thread.
+ * Speaks exactly the same protocol as ClientHandler (see GameProtocol).
+ * The loop only moves bytes: received bytes are handed to a small worker pool (-Dttt.nio.workers),
+ * one connection at a time in arrival order, so a CPU search of one player (up to ttt.cpuMillis)
+ * never stalls the others. Replies come back through the pending queue and the dirty list.
+ */
+class NioServer {
+    private static final int READ_BUFFER = 1024;
+    // received chunks a connection may have waiting for a worker before the loop stops reading it
+    private static final int MAX_INBOUND = 16;
+    private static final byte[] DISCONNECT = new byte[0]; // marks the end of a connection's input
+
+    private static final AtomicInteger WORKER_IDS = new AtomicInteger();
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Integer.getInteger("ttt.nio.workers", Math.max(4, Runtime.getRuntime().availableProcessors())), r -> {
+                Thread t = new Thread(r, "NioWorker-" + WORKER_IDS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final int port;
+    private Selector selector;
+    private Thread loopThread;
+    // connections that got output from another thread and need OP_WRITE
+    private final ConcurrentLinkedQueue<NioConnection> dirty = new ConcurrentLinkedQueue<>();
+
+    NioServer(int port) {
+        this.port = port;
+    }
+
+    void run() throws IOException {
+        loopThread = Thread.currentThread();
+        selector = Selector.open();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (true) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept(server);
+                        if (key.isValid() && key.isReadable()) ((NioConnection) key.attachment()).read();
+                        if (key.isValid() && key.isWritable()) ((NioConnection) key.attachment()).flush();
+                    } catch (IOException | RuntimeException e) {
+                        if (e instanceof RuntimeException) e.printStackTrace();
+                        if (key.attachment() != null) ((NioConnection) key.attachment()).close();
+                    }
+                }
+                // writes queued by other threads since the last select
+                NioConnection conn;
+                while ((conn = dirty.poll()) != null) conn.updateInterest();
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            System.out.println("Client connected: " + ch.getRemoteAddress());
+            ch.configureBlocking(false);
+            ch.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+            NioConnection conn = new NioConnection(ch, key);
+            key.attach(conn);
+            conn.protocol.onConnect();
+        }
+    }
+
+    /** Per-socket state: buffers + protocol session. */
+    private final class NioConnection implements Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuf = ByteBuffer.allocate(READ_BUFFER);
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private ByteBuffer latest; // last sendLatest frame, guarded by pending
+        // received bytes waiting for a worker, guarded by itself; processing = a worker is on them
+        private final ArrayDeque<byte[]> inbound = new ArrayDeque<>();
+        private boolean processing;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final GameProtocol protocol = new GameProtocol(this);
+
+        NioConnection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        // loop thread: hand what arrived to the workers
+        void read() throws IOException {
+            int n = channel.read(readBuf);
+            if (n < 0) {
+                close();
+                return;
+            }
+            byte[] chunk = Arrays.copyOf(readBuf.array(), n);
+            readBuf.clear();
+            if (submit(chunk) >= MAX_INBOUND) updateInterest(); // stop reading until the worker catches up
+        }
+
+        // queue input for the protocol; returns the backlog
+        private int submit(byte[] chunk) {
+            boolean start;
+            int backlog;
+            synchronized (inbound) {
+                inbound.add(chunk);
+                backlog = inbound.size();
+                start = !processing;
+                processing = true;
+            }
+            if (start) WORKERS.execute(this::process);
+            return backlog;
+        }
+
+        // worker thread; only one per connection at a time, so the protocol sees bytes in order
+        private void process() {
+            while (true) {
+                byte[] chunk;
+                boolean wasFull;
+                synchronized (inbound) {
+                    wasFull = inbound.size() >= MAX_INBOUND;
+                    chunk = inbound.poll();
+                    if (chunk == null) {
+                        processing = false;
+                        return;
+                    }
+                }
+                if (chunk == DISCONNECT) {
+                    protocol.onDisconnect();
+                    continue;
+                }
+                try {
+                    for (byte b : chunk) protocol.onByte(b & 0xFF);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    close();
+                }
+                if (wasFull) { // the loop stopped reading this connection, resume
+                    dirty.add(this);
+                    selector.wakeup();
+                }
+            }
+        }
+
+        @Override
+        public void send(String msg) {
+            enqueue(ByteBuffer.wrap((msg + "\n").getBytes(StandardCharsets.US_ASCII)));
+        }
+
+        @Override
+        public void send(byte[] frame) {
+            enqueue(ByteBuffer.wrap(frame));
+        }
+
+        @Override
+        public boolean sendLatest(byte[] frame) {
+            ByteBuffer buf = ByteBuffer.wrap(frame);
+            boolean replaced;
+            synchronized (pending) {
+                // nothing of the previous board written yet: drop it, the new one says it all
+                replaced = latest != null && latest.position() == 0 && pending.removeLastOccurrence(latest);
+                latest = buf;
+                pending.add(buf);
+            }
+            wake();
+            return replaced;
+        }
+
+        private void enqueue(ByteBuffer buf) {
+            synchronized (pending) { pending.add(buf); }
+            wake();
+        }
+
+        // flush right away on the loop thread, otherwise have the loop turn on OP_WRITE
+        private void wake() {
+            if (Thread.currentThread() != loopThread) {
+                dirty.add(this);
+                selector.wakeup();
+            } else {
+                try { flush(); } catch (IOException e) { close(); }
+            }
+        }
+
+        // write as much as the socket takes; keep OP_WRITE only while something is left
+        void flush() throws IOException {
+            synchronized (pending) {
+                while (!pending.isEmpty()) {
+                    ByteBuffer head = pending.peek();
+                    channel.write(head);
+                    if (head.hasRemaining()) break;
+                    pending.poll();
+                }
+            }
+            updateInterest();
+        }
+
+        void updateInterest() {
+            if (!key.isValid()) return;
+            boolean hasPending, readable;
+            synchronized (pending) { hasPending = !pending.isEmpty(); }
+            synchronized (inbound) { readable = inbound.size() < MAX_INBOUND; }
+            key.interestOps((readable ? SelectionKey.OP_READ : 0) | (hasPending ? SelectionKey.OP_WRITE : 0));
+        }
+
+        // any thread; the protocol hears about it after the input queued before it
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            key.cancel();
+            try { channel.close(); } catch (IOException ignored) { }
+            submit(DISCONNECT);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package network;
+
+import DB.GameRecord;
+import backEnd.GameEngine;
+import backEnd.MoveLog;
+import metrics.Metrics;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * One human-vs-human game on the shared 3x3 engine, opened by the Matchmaker.
+ * - Moves of either connection go through move(); the board is relayed to both players
+ * - The player to move has turnTimeoutMillis, then forfeits (END:timeout)
+ * - A player who disconnects forfeits too (END:opponent-left)
+ * - Spectators can WATCH the room by its id (r<n>) until it ends
+ * Both connections' threads (and the scheduler for timeouts) call in here, so every entry point locks the room.
+ */
+final class Room {
+    private static final Metrics.Gauge ACTIVE = Metrics.gauge("ttt_rooms_active", "Human-vs-human games in progress");
+    private static final Metrics.Counter TIMEOUTS = Metrics.counter("ttt_room_timeouts_total", "Rooms ended by a player running out of time");
+    private static final Metrics.Counter ABANDONED = Metrics.counter("ttt_room_abandoned_total", "Rooms ended by a player disconnecting");
+
+    private final Matchmaker matchmaker;
+    private final GameProtocol x, o;
+    private final String nameX, nameO;
+    private final GameEngine engine = GameEngine.create(3, 3);
+    private final long startedAt = System.currentTimeMillis();
+    private final Spectators spectators = Spectators.open("r");
+    private ScheduledFuture<?> deadline;
+    private boolean over;
+
+    Room(Matchmaker matchmaker, GameProtocol x, String nameX, GameProtocol o, String nameO) {
+        this.matchmaker = matchmaker;
+        this.x = x;
+        this.nameX = nameX;
+        this.o = o;
+        this.nameO = nameO;
+    }
+
+    synchronized void start() {
+        ACTIVE.inc();
+        x.joinRoom(this);
+        o.joinRoom(this);
+        x.sendEvent("MATCH:X," + nameO);
+        o.sendEvent("MATCH:O," + nameX);
+        broadcast(engine.getWinner());
+        armTimer();
+        System.out.println("Room " + spectators.getId() + " " + nameX + " vs " + nameO + " started");
+    }
+
+    /** A move by one of the two players; anything out of turn or on a taken cell just gets the board again. */
+    synchronized void move(GameProtocol who, int pos) {
+        if (over) return;
+        char symbol = who == x ? 'X' : 'O';
+        if (symbol != toMove() || !engine.placeSymbol(pos, symbol)) {
+            who.sendBoard(engine.getBoard(), engine.getSize(), engine.getWinner());
+            return;
+        }
+        broadcast(engine.getWinner());
+        if (engine.isGameOver()) finish(engine.getWinner(), null);
+        else armTimer();
+    }
+
+    /** The player left (disconnect, or another command); the opponent wins. */
+    synchronized void leave(GameProtocol who) {
+        if (over) return;
+        ABANDONED.inc();
+        forfeit(who, "opponent-left");
+    }
+
+    private synchronized void timeout() {
+        if (over) return;
+        TIMEOUTS.inc();
+        forfeit(toMove() == 'X' ? x : o, "timeout");
+    }
+
+    private void forfeit(GameProtocol loser, String reason) {
+        char winner = loser == x ? 'O' : 'X';
+        broadcast(winner);
+        finish(winner, reason);
+    }
+
+    // X moves first, so the side to move follows from the number of moves so far
+    private char toMove() {
+        return engine.getMoveLog().size() % 2 == 0 ? 'X' : 'O';
+    }
+
+    private void broadcast(char winner) {
+        char[] board = engine.getBoard();
+        x.sendBoard(board, engine.getSize(), winner);
+        o.sendBoard(board, engine.getSize(), winner);
+        spectators.publish(board, engine.getSize(), winner);
+    }
+
+    private void armTimer() {
+        if (deadline != null) deadline.cancel(false);
+        deadline = matchmaker.schedule(this::timeout, matchmaker.turnTimeoutMillis());
+    }
+
+    private void finish(char winner, String reason) {
+        over = true;
+        if (deadline != null) deadline.cancel(false);
+        ACTIVE.dec();
+        if (reason != null) {
+            x.sendEvent("END:" + reason);
+            o.sendEvent("END:" + reason);
+        }
+        x.leaveRoom(this);
+        o.leaveRoom(this);
+        spectators.close(engine.getBoard(), engine.getSize(), winner);
+
+        MoveLog log = engine.getMoveLog();
+        int[] moves = new int[log.size()];
+        for (int i = 0; i < moves.length; i++) moves[i] = log.pos(i);
+        long now = System.currentTimeMillis();
+        GameProtocol.record(new GameRecord(nameX, nameO, winner, engine.getSize(), engine.getWinLength(),
+                engine.getSeed(), moves, startedAt, now - startedAt));
+        System.out.println("Room " + spectators.getId() + " " + nameX + " vs " + nameO + " over: " + winner + (reason == null ? "" : " (" + reason + ")"));
+    }
+}
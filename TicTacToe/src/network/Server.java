@@ -1,27 +1,151 @@
 package network;
 
-import backEnd.TicTacToeBackend;
+import DB.DatabaseHandler;
+import DB.GameRecorder;
+import DB.RatingService;
+import backEnd.CpuPlayer;
+import com.sun.net.httpserver.HttpServer;
+import metrics.Metrics;
+
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Socket game server on port 5000. Transport is chosen at startup
+ * (first argument or -Dttt.server.mode):
+ * - threads : one platform thread per connection (default)
+ * - virtual : one virtual thread per connection (needs a JDK with virtual threads, else threads)
+ * - nio     : single Selector event loop plus a few command workers, see NioServer
+ * Metrics (Prometheus text) are served at http://localhost:5001/metrics, -Dttt.metrics.port=0 turns that off.
+ * Finished games are recorded in the games table of -Dttt.db (default tictactoe.db; -Dttt.db= turns that off),
+ * and human-vs-human games update the players' Elo there.
+ */
 public class Server {
     private static final int PORT = 5000;
+    private static final int METRICS_PORT = Integer.getInteger("ttt.metrics.port", 5001);
+    private static final String DB_PATH = System.getProperty("ttt.db", "tictactoe.db");
 
     public static void main(String[] args) throws IOException {
-        System.out.println("TicTacToe Server started on port " + PORT);
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        String mode = args.length > 0 ? args[0] : System.getProperty("ttt.server.mode", "threads");
+        serve(PORT, mode);
+    }
+
+    /** Run the server on the given port until the process exits (blocks the calling thread). */
+    public static void serve(int port, String mode) throws IOException {
+        serve(port, mode, DB_PATH);
+    }
+
+    /** Same, recording games and ratings in the SQLite file at dbPath (empty: no history). */
+    public static void serve(int port, String mode, String dbPath) throws IOException {
+        CpuPlayer.warmUp(); // solve perfect play once, before the first client
+        System.out.println("TicTacToe Server started on port " + port + " (" + mode + ")");
+        if (METRICS_PORT > 0) startMetrics(METRICS_PORT);
+        if (!dbPath.isEmpty()) startRecorder(dbPath);
+
+        if ("nio".equalsIgnoreCase(mode)) {
+            new NioServer(port).run();
+            return;
+        }
+
+        ExecutorService perConnection = "virtual".equalsIgnoreCase(mode) ? virtualThreadExecutor() : null;
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
             while (true) {
                 Socket socket = serverSocket.accept();
                 System.out.println("Client connected: " + socket);
-                new Thread(new ClientHandler(socket)).start();
+                if (perConnection != null) perConnection.execute(new ClientHandler(socket));
+                else new Thread(new ClientHandler(socket)).start();
             }
         }
     }
+
+    // small side HTTP server so Prometheus can scrape the game server
+    private static void startMetrics(int port) {
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(port), 0);
+            http.createContext("/metrics", exchange -> {
+                byte[] bytes = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream os = exchange.getResponseBody()) { os.write(bytes); }
+            });
+            http.start(); // default executor: one background thread is plenty for scrapes
+            System.out.println("Metrics on http://localhost:" + port + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Metrics endpoint not started: " + e.getMessage());
+        }
+    }
+
+    // game history and ratings: connection handlers only queue / update in memory, writes happen in batches
+    private static void startRecorder(String dbPath) {
+        try {
+            DatabaseHandler db = new DatabaseHandler(dbPath);
+            GameProtocol.setRecorder(new GameRecorder(db,
+                    Integer.getInteger("ttt.games.queue", 10_000),
+                    Integer.getInteger("ttt.games.batch", 500)));
+            GameProtocol.setRatings(new RatingService(db, Long.getLong("ttt.ratings.flushMillis", 1000)));
+            System.out.println("Recording games in " + dbPath);
+        } catch (SQLException e) {
+            System.err.println("Game history off, DB init failed: " + e.getMessage());
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when the running JDK has it (21+), null otherwise
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads not available on this JDK, using platform threads");
+            return null;
+        }
+    }
 }
 
 class ClientHandler implements Runnable {
+    /*
+     * Blocking sockets can't write without waiting, so spectator boards go out on a small fixed pool
+     * of writer threads (-Dttt.spectator.writers), at most one per connection at a time.
+     * A client that stops reading leaves a write stuck on its socket: the watchdog closes any socket
+     * whose write has been stuck for STALL_NANOS (5 s), which ends that write with an exception, so
+     * neither a writer nor a player pushing a move to that client waits longer than that.
+     */
+    private static final int WRITER_THREADS = Integer.getInteger("ttt.spectator.writers",
+            Math.max(4, Runtime.getRuntime().availableProcessors()));
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final ThreadPoolExecutor SPECTATOR_WRITERS = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "SpectatorWriter");
+                t.setDaemon(true);
+                return t;
+            });
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SocketWatchdog");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Set<SocketConnection> OPEN = ConcurrentHashMap.newKeySet();
+    private static final Metrics.Counter STALLED = Metrics.counter("ttt_socket_connections_stalled_total",
+            "Connections closed because the client stopped reading");
+    static {
+        SPECTATOR_WRITERS.allowCoreThreadTimeOut(true);
+        WATCHDOG.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (SocketConnection c : OPEN) c.closeIfStalled(now);
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
     private final Socket socket;
-    private final TicTacToeBackend backend = new TicTacToeBackend();
 
     public ClientHandler(Socket socket) {
         this.socket = socket;
@@ -30,30 +154,92 @@ class ClientHandler implements Runnable {
     @Override
     public void run() {
         try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                PrintWriter out = new PrintWriter(socket.getOutputStream(), true)
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream())
         ) {
-            sendBoard(out);
-
-            String msg;
-            while ((msg = in.readLine()) != null) {
-                if (msg.startsWith("MOVE:")) {
-                    int pos = Integer.parseInt(msg.substring(5));
-
-                    boolean ok = backend.playerMove(pos);
-                    if (ok && !backend.isGameOver()) {
-                        backend.computerMove(); // CPU plays
-                    }
-                    sendBoard(out);
+            SocketConnection conn = new SocketConnection(socket, out);
+            OPEN.add(conn);
+            GameProtocol protocol = new GameProtocol(conn);
+            protocol.onConnect();
+
+            int b;
+            try {
+                while ((b = in.read()) != -1) {
+                    protocol.onByte(b);
                 }
+            } finally {
+                protocol.onDisconnect();
+                OPEN.remove(conn);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void sendBoard(PrintWriter out) {
-        char[] b = backend.getBoard();
-        out.println(new String(b) + "," + backend.getWinner());
+    // outgoing side of one socket; other threads push to it too (opponent's moves, spectator boards)
+    private static final class SocketConnection implements Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        // spectator board waiting for a SPECTATOR_WRITERS thread (or the next send)
+        private final AtomicReference<byte[]> latest = new AtomicReference<>();
+        private final AtomicBoolean writerQueued = new AtomicBoolean();
+        private volatile long writeStart; // nanoTime when the current write began, 0 when not writing
+
+        SocketConnection(Socket socket, OutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        @Override public void send(String line) { send((line + "\n").getBytes(StandardCharsets.US_ASCII)); }
+
+        // writes are serialized on out
+        @Override public void send(byte[] frame) {
+            synchronized (out) {
+                write(latest.getAndSet(null), frame); // keep the board ahead of what came after it
+            }
+        }
+
+        // the caller never waits on this socket: a writer thread sends the board, and a newer
+        // board that comes while the writer is still blocked on a slow viewer replaces it
+        @Override public boolean sendLatest(byte[] frame) {
+            if (latest.getAndSet(frame) != null) return true;
+            if (writerQueued.compareAndSet(false, true)) SPECTATOR_WRITERS.execute(this::writeLatest);
+            return false;
+        }
+
+        @Override public void close() { try { socket.close(); } catch (IOException ignored) { } }
+
+        // writer thread: sends boards until none is waiting, so one slow viewer never holds two writers
+        private void writeLatest() {
+            do {
+                synchronized (out) {
+                    byte[] board = latest.getAndSet(null);
+                    if (board != null) write(board, null);
+                }
+                writerQueued.set(false);
+            } while (latest.get() != null && writerQueued.compareAndSet(false, true));
+        }
+
+        // caller holds out's lock; either frame may be null
+        private void write(byte[] first, byte[] second) {
+            writeStart = System.nanoTime() | 1; // never 0 while writing
+            try {
+                if (first != null) out.write(first);
+                if (second != null) out.write(second);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            } finally {
+                writeStart = 0;
+            }
+        }
+
+        // watchdog: closing the socket throws the stuck write out
+        void closeIfStalled(long now) {
+            long started = writeStart;
+            if (started == 0 || now - started <= STALL_NANOS || socket.isClosed()) return;
+            STALLED.inc();
+            close();
+        }
     }
 }
@@ -0,0 +1,173 @@
+package network;
+
+import metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spectator channel of one game: a Room ("r<n>") or a connection's game against the CPU ("g<n>").
+ * - publish() snapshots the board into an immutable Frame; its text and binary encodings are built
+ *   at most once, however many viewers there are, and every viewer gets the same byte[]
+ * - The game's thread only stores the frame and wakes the fan-out thread, it never touches a viewer
+ * - Fan-out hands each viewer the frame with Connection.sendLatest, which never blocks and replaces
+ *   a board the viewer hasn't received yet; updates that arrive while a fan-out runs collapse into
+ *   the newest one, so a slow viewer or a busy game skips states instead of queueing them
+ * - close() sends the final board, then text viewers get UNWATCHED:<id> and everyone is let go
+ */
+final class Spectators {
+    private static final Metrics.Gauge VIEWERS = Metrics.gauge("ttt_spectators", "Connections watching a game");
+    private static final Metrics.Counter FRAMES = Metrics.counter("ttt_spectator_frames_total", "Boards handed to spectators");
+    private static final Metrics.Counter ENCODES = Metrics.counter("ttt_spectator_encodes_total",
+            "Spectator frames encoded (once per update and format)");
+    private static final Metrics.Counter REPLACED = Metrics.counter("ttt_spectator_frames_replaced_total",
+            "Spectator boards replaced by a newer one before they were sent");
+    private static final Metrics.Histogram FANOUT = Metrics.histogram("ttt_spectator_fanout_seconds",
+            "Time to hand one update to all viewers of a game");
+
+    private static final Map<String, Spectators> CHANNELS = new ConcurrentHashMap<>();
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final int MAX_LISTED = 50;
+    // one thread hands out every game's updates, players' threads never wait for viewers
+    private static final ExecutorService FANOUT_THREAD = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SpectatorFanout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** One board state as spectators see it. Immutable; encodings are built on first use. */
+    static final class Frame {
+        final String channel;
+        final long seq;
+        final boolean last;
+        private final char[] board;
+        private final int size;
+        private final char winner;
+        private byte[] text, binary;
+
+        private Frame(String channel, long seq, char[] board, int size, char winner, boolean last) {
+            this.channel = channel;
+            this.seq = seq;
+            this.board = board;
+            this.size = size;
+            this.winner = winner;
+            this.last = last;
+        }
+
+        // "board,winner" line like a player's own, plus UNWATCHED:<id> on the final frame
+        synchronized byte[] text() {
+            if (text == null) {
+                String s = new String(board) + "," + winner + "\n" + (last ? "UNWATCHED:" + channel + "\n" : "");
+                text = s.getBytes(StandardCharsets.US_ASCII);
+                ENCODES.inc();
+            }
+            return text;
+        }
+
+        synchronized byte[] binary() {
+            if (binary == null) {
+                binary = BinaryProtocol.encodeBoard(board, size, winner, (int) seq);
+                ENCODES.inc();
+            }
+            return binary;
+        }
+    }
+
+    private final String id;
+    private final Set<GameProtocol> viewers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Frame latest;
+    private Frame sent; // fan-out thread only
+
+    private Spectators(String id) {
+        this.id = id;
+    }
+
+    /** New channel, listed until close(); prefix "r" for rooms, "g" for games against the CPU. */
+    static Spectators open(String prefix) {
+        Spectators s = new Spectators(prefix + IDS.incrementAndGet());
+        CHANNELS.put(s.id, s);
+        return s;
+    }
+
+    static Spectators find(String id) { return CHANNELS.get(id); }
+
+    /** "id=viewers,..." of the most watched channels (rooms first on ties), for a bare WATCH. */
+    static String list() {
+        List<Spectators> all = new ArrayList<>(CHANNELS.values());
+        all.sort((a, b) -> a.viewers.size() != b.viewers.size()
+                ? Integer.compare(b.viewers.size(), a.viewers.size())
+                : a.id.compareTo(b.id));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < all.size() && i < MAX_LISTED; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(all.get(i).id).append('=').append(all.get(i).viewers.size());
+        }
+        return sb.toString();
+    }
+
+    String getId() { return id; }
+
+    /**
+     * The board after an update. The board is copied, the caller may change it right after.
+     * One game publishes from one thread at a time (its connection, or under the room's lock).
+     */
+    void publish(char[] board, int size, char winner) {
+        publish(board, size, winner, false);
+    }
+
+    /** Last board of the game; viewers get it, then the channel lets them go and is unlisted. */
+    void close(char[] board, int size, char winner) {
+        if (CHANNELS.remove(id) == null) return;
+        publish(board, size, winner, true);
+    }
+
+    private void publish(char[] board, int size, char winner, boolean last) {
+        Frame prev = latest;
+        latest = new Frame(id, prev == null ? 0 : prev.seq + 1, board.clone(), size, winner, last);
+        if (!viewers.isEmpty() && scheduled.compareAndSet(false, true)) FANOUT_THREAD.execute(this::fanOut);
+    }
+
+    /** Add a viewer; returns the current frame (null before the first update or once closed). */
+    Frame add(GameProtocol viewer) {
+        if (viewers.add(viewer)) VIEWERS.inc();
+        Frame f = latest;
+        if (f != null && f.last || !CHANNELS.containsKey(id)) {
+            remove(viewer); // closed meanwhile
+            return null;
+        }
+        return f;
+    }
+
+    void remove(GameProtocol viewer) {
+        if (viewers.remove(viewer)) VIEWERS.dec();
+    }
+
+    static void replaced() { REPLACED.inc(); }
+
+    // fan-out thread; the flag is cleared before reading latest, so a later publish schedules another run
+    private void fanOut() {
+        scheduled.set(false);
+        Frame f = latest;
+        if (f == sent) return;
+        sent = f;
+        long start = System.nanoTime();
+        int n = 0;
+        for (GameProtocol v : viewers) {
+            if (v.deliver(this, f)) n++;
+        }
+        FRAMES.add(n);
+        FANOUT.observeSince(start);
+        if (f.last) {
+            for (GameProtocol v : viewers) remove(v);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package tournament;
+
+import backEnd.CpuPlayer;
+import backEnd.Difficulty;
+import backEnd.Strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Headless self-play tournament for 3x3 CPU strategies. Every strategy plays every
+ * strategy (itself included) as X and as O, and the runner prints win / draw rates
+ * and games per second.
+ *   java tournament.Tournament [random greedy perfect|minimax ...]
+ *   -Dttt.tournament.games=1000000   games per pairing
+ *   -Dttt.tournament.seed=42         repeatable run (default: a fresh seed, printed)
+ * Games are cut into chunks run by a parallel stream on the common fork/join pool.
+ * Each chunk owns a SplittableRandom split off the root up front, so threads never
+ * share a generator and a given seed gives the same counts on any number of cores.
+ */
+public class Tournament {
+    private static final int CHUNK = 10_000;
+    private static final int FULL = 0x1FF;
+
+    /** Outcome counts of a batch of games. */
+    static final class Result {
+        long xWins, oWins, draws;
+
+        void add(char winner) {
+            if (winner == 'X') xWins++;
+            else if (winner == 'O') oWins++;
+            else draws++;
+        }
+
+        void merge(Result other) {
+            xWins += other.xWins;
+            oWins += other.oWins;
+            draws += other.draws;
+        }
+
+        long games() { return xWins + oWins + draws; }
+    }
+
+    public static void main(String[] args) {
+        long games = Long.getLong("ttt.tournament.games", 1_000_000L);
+        long seed = Long.getLong("ttt.tournament.seed", System.nanoTime());
+        List<Strategy> strategies = new ArrayList<>();
+        for (String name : args.length > 0 ? args : new String[]{"random", "greedy", "perfect"}) {
+            Difficulty d = Difficulty.parse("minimax".equalsIgnoreCase(name) ? "perfect" : name, null);
+            if (d == null) {
+                System.err.println("Unknown strategy: " + name + " (random, greedy, perfect / minimax)");
+                System.exit(2);
+            }
+            strategies.add(Strategy.of(d));
+        }
+
+        CpuPlayer.warmUp(); // build the perfect-play table before the clock starts
+        System.out.printf("%d games per pairing, %d cores, seed %d%n", games,
+                Runtime.getRuntime().availableProcessors(), seed);
+        System.out.printf("%-10s %-10s %12s %8s %8s %8s %14s%n", "X", "O", "games", "X win", "O win", "draw", "games/s");
+
+        SplittableRandom root = new SplittableRandom(seed);
+        long total = 0, start = System.nanoTime();
+        for (Strategy x : strategies) {
+            for (Strategy o : strategies) {
+                long t0 = System.nanoTime();
+                Result r = play(x, o, games, root.split());
+                double secs = (System.nanoTime() - t0) / 1e9;
+                total += r.games();
+                System.out.printf("%-10s %-10s %12d %7.2f%% %7.2f%% %7.2f%% %14.0f%n", x.name(), o.name(), r.games(),
+                        100.0 * r.xWins / r.games(), 100.0 * r.oWins / r.games(), 100.0 * r.draws / r.games(),
+                        r.games() / secs);
+            }
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("total %d games in %.2f s, %.0f games/s%n", total, secs, total / secs);
+    }
+
+    /** Play {@code games} games of x (moving first) against o, spread over all cores. */
+    static Result play(Strategy x, Strategy o, long games, SplittableRandom root) {
+        int chunks = (int) ((games + CHUNK - 1) / CHUNK);
+        SplittableRandom[] rngs = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) rngs[i] = root.split(); // sequential, so the seed decides everything
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(i -> playChunk(x, o, (int) Math.min(CHUNK, games - (long) i * CHUNK), rngs[i]))
+                .collect(Result::new, Result::merge, Result::merge);
+    }
+
+    private static Result playChunk(Strategy x, Strategy o, int games, SplittableRandom rand) {
+        Result r = new Result();
+        for (int g = 0; g < games; g++) r.add(playGame(x, o, rand));
+        return r;
+    }
+
+    // one game on bit masks: 'X', 'O' or 'D'; an illegal move loses on the spot
+    private static char playGame(Strategy x, Strategy o, SplittableRandom rand) {
+        int xMask = 0, oMask = 0;
+        for (boolean xToMove = true; (xMask | oMask) != FULL; xToMove = !xToMove) {
+            int cell = (xToMove ? x : o).pickMove(xMask, oMask, xToMove, rand);
+            int bit = cell >= 0 && cell < 9 ? 1 << cell : 0;
+            if (bit == 0 || ((xMask | oMask) & bit) != 0) return xToMove ? 'O' : 'X';
+            if (xToMove) {
+                xMask |= bit;
+                if (CpuPlayer.hasLine(xMask)) return 'X';
+            } else {
+                oMask |= bit;
+                if (CpuPlayer.hasLine(oMask)) return 'O';
+            }
+        }
+        return 'D';
+    }
+}
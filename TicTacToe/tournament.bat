@@ -0,0 +1,28 @@
+@echo off
+REM ==== CPU strategy tournament (headless, uses all cores) ====
+REM Strategies as arguments, JVM flags through JAVA_OPTS, e.g.
+REM   set JAVA_OPTS=-Dttt.tournament.games=5000000 -Dttt.tournament.seed=42
+REM   tournament.bat random greedy perfect
+
+REM Path to JDK 17
+set JAVA_HOME=C:\Program Files\Java\jdk-17
+
+REM Sources and output
+set SRC_DIR=C:\Games\TicTacToe\src
+set OUT_DIR=C:\Games\TicTacToe\out\tournament
+
+if exist "%OUT_DIR%" rmdir /s /q "%OUT_DIR%"
+mkdir "%OUT_DIR%"
+
+echo Compiling backend and tournament...
+dir /S /B "%SRC_DIR%\backEnd\*.java" "%SRC_DIR%\tournament\*.java" > "%OUT_DIR%\sources.txt"
+"%JAVA_HOME%\bin\javac.exe" -d "%OUT_DIR%" @"%OUT_DIR%\sources.txt"
+if errorlevel 1 (
+    echo Compilation FAILED!
+    pause
+    exit /b
+)
+
+"%JAVA_HOME%\bin\java.exe" %JAVA_OPTS% -cp "%OUT_DIR%" tournament.Tournament %*
+
+pause
@@ -0,0 +1,17 @@
+@echo off
+REM ==== Run TicTacToeWeb JMH microbenchmarks (needs Maven on the PATH) ====
+REM Arguments go to JMH, e.g.  bench.bat WebBenchmarks -prof gc   or   bench.bat -rf csv -rff results.csv
+
+cd /d "%~dp0"
+
+REM BoardJson must write the same bytes as org.json before its speed means anything
+call mvn -B -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test -Dexec.mainClass=frontend.BoardJsonCheck
+if errorlevel 1 (
+    echo BoardJsonCheck FAILED!
+    pause
+    exit /b
+)
+
+call mvn -B -q -Pjmh verify "-Djmh.args=%*"
+
+pause
@@ -0,0 +1,134 @@
+package DB;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DatabaseHandler against a throw-away SQLite file:
+ * single addWin, batched addWins through LeaderboardService, leaderboard reads,
+ * game history (one game per transaction vs GameRecorder's batches, plus the stats queries)
+ * and RatingService updates / rank lookups. Every player has a win and a rated game before
+ * the first iteration, so lookups never miss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbBenchmarks {
+    private static final int PLAYERS = 1000;
+
+    private final List<GameRecord> batch = new ArrayList<>();
+    private Path dir;
+    private DatabaseHandler db;
+    private LeaderboardService service;
+    private GameRecorder recorder;
+    private RatingService ratings;
+    private int i;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("ttt-bench");
+        db = new DatabaseHandler(dir.resolve("bench.db").toString());
+        List<GameRecord> games = new ArrayList<>();
+        for (int p = 0; p < PLAYERS; p++) {
+            db.addWin("player" + p);
+            games.add(game(p));
+        }
+        db.addGames(games);
+        for (int g = 0; g < 100; g++) batch.add(game(g));
+        service = new LeaderboardService(db, 100, 1000);
+        recorder = new GameRecorder(db, 10_000, 500);
+        ratings = new RatingService(db, 1000);
+        for (int p = 0; p < PLAYERS; p++) ratings.recordGame("player" + p, "player" + ((p + 1) % PLAYERS), 'X');
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        ratings.close();
+        recorder.close();
+        service.close();
+        db.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) Files.deleteIfExists(dir.resolve("bench.db" + suffix));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void addWin() throws SQLException { db.addWin("player" + (i++ % PLAYERS)); }
+
+    @Benchmark
+    public int getLeaderboardAllRows() throws SQLException { return db.getLeaderboard().size(); }
+
+    @Benchmark
+    public int getLeaderboardPage() throws SQLException { return db.getLeaderboard(20, 0).size(); }
+
+    @Benchmark
+    public int getRank() throws SQLException { return db.getRank("player" + (i++ % PLAYERS)).rank; }
+
+    /** write-behind: the win lands in memory, the flusher batches it later */
+    @Benchmark
+    public void leaderboardServiceAddWin() { service.addWin("player" + (i++ % PLAYERS)); }
+
+    @Benchmark
+    public int leaderboardServiceGetLeaderboard() { return service.getLeaderboard().size(); }
+
+    @Benchmark
+    public void addGamesOnePerTransaction() throws SQLException {
+        db.addGames(Collections.singletonList(game(i++)));
+    }
+
+    /** 100 games in one transaction, reported per game */
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void addGamesHundredPerTransaction() throws SQLException { db.addGames(batch); }
+
+    @Benchmark
+    public boolean gameRecorderRecord() { return recorder.record(game(i++)); }
+
+    @Benchmark
+    public int getPlayerStatsTop20() throws SQLException { return db.getPlayerStats(null, 20).size(); }
+
+    @Benchmark
+    public int getPlayerStatsOne() throws SQLException { return db.getPlayerStats("player" + (i++ % PLAYERS), 1).size(); }
+
+    @Benchmark
+    public int getOpenings() throws SQLException { return db.getOpenings(3, 9).size(); }
+
+    @Benchmark
+    public void ratingServiceRecordGame() {
+        int n = i++;
+        ratings.recordGame("player" + (n % PLAYERS), "player" + ((n * 7 + 1) % PLAYERS), "XOD".charAt(n % 3));
+    }
+
+    @Benchmark
+    public int ratingServiceGetRank() { return ratings.getRank("player" + (i++ % PLAYERS)).rank; }
+
+    @Benchmark
+    public int ratingServiceGetPage() { return ratings.getPage(20, 500).size(); }
+
+    private static GameRecord game(long i) {
+        int[] moves = {(int) (i % 9), (int) ((i + 4) % 9)};
+        return new GameRecord("player" + (i % PLAYERS), "cpu:greedy", "XOD".charAt((int) (i % 3)), 3, 3, i,
+                moves, System.currentTimeMillis(), 1000);
+    }
+}
@@ -0,0 +1,48 @@
+package frontend;
+
+import backend.Difficulty;
+import backend.GameEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that BoardJson writes exactly the bytes org.json produces (buildBoardJson),
+ * for every position of random games on every board size. Exits with 1 on the first difference.
+ */
+public class BoardJsonCheck {
+
+    public static void main(String[] args) {
+        Random rand = new Random(42);
+        long positions = 0;
+        for (int size = 3; size <= 25; size++) {
+            for (int k = 3; k <= Math.min(size, 5); k++) {
+                for (int game = 0; game < 20; game++) {
+                    GameEngine backend = GameEngine.create(size, k);
+                    backend.setDifficulty(Difficulty.RANDOM);
+                    check(backend);
+                    positions++;
+                    while (!backend.isGameOver()) {
+                        if (backend.playerMove(rand.nextInt(size * size)) && !backend.isGameOver()) backend.computerMove();
+                        check(backend);
+                        positions++;
+                    }
+                }
+            }
+        }
+        System.out.println("BoardJson matches org.json on " + positions + " positions");
+    }
+
+    private static void check(GameEngine backend) {
+        byte[] expected = HttpServerApp.buildBoardJson(backend).toString().getBytes(StandardCharsets.UTF_8);
+        int len = BoardJson.write(backend);
+        byte[] actual = Arrays.copyOf(BoardJson.buffer(), len);
+        if (!Arrays.equals(expected, actual)) {
+            System.out.println("MISMATCH on a " + backend.getSize() + "x" + backend.getSize() + " board");
+            System.out.println("  org.json : " + new String(expected, StandardCharsets.UTF_8));
+            System.out.println("  BoardJson: " + new String(actual, StandardCharsets.UTF_8));
+            System.exit(1);
+        }
+    }
+}
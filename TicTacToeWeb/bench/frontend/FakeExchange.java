@@ -0,0 +1,52 @@
+package frontend;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/** In-memory HttpExchange for benchmarking handlers/helpers without a socket. */
+class FakeExchange extends HttpExchange {
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private URI uri = URI.create("/TicTacToe/board");
+    private int code = -1;
+
+    /** Reuse for the next request. */
+    FakeExchange reset(String path) {
+        uri = URI.create(path);
+        responseHeaders.clear();
+        body.reset();
+        code = -1;
+        return this;
+    }
+
+    int bodySize() { return body.size(); }
+    byte[] bodyBytes() { return body.toByteArray(); }
+
+    @Override public Headers getRequestHeaders() { return requestHeaders; }
+    @Override public Headers getResponseHeaders() { return responseHeaders; }
+    @Override public URI getRequestURI() { return uri; }
+    @Override public String getRequestMethod() { return "GET"; }
+    @Override public HttpContext getHttpContext() { return null; }
+    @Override public void close() { }
+    @Override public InputStream getRequestBody() { return new ByteArrayInputStream(new byte[0]); }
+    @Override public OutputStream getResponseBody() { return body; }
+    @Override public void sendResponseHeaders(int rCode, long responseLength) { code = rCode; }
+    @Override public InetSocketAddress getRemoteAddress() { return new InetSocketAddress(0); }
+    @Override public int getResponseCode() { return code; }
+    @Override public InetSocketAddress getLocalAddress() { return new InetSocketAddress(0); }
+    @Override public String getProtocol() { return "HTTP/1.1"; }
+    @Override public Object getAttribute(String name) { return null; }
+    @Override public void setAttribute(String name, Object value) { }
+    @Override public void setStreams(InputStream i, OutputStream o) { }
+    @Override public HttpPrincipal getPrincipal() { return null; }
+}
@@ -0,0 +1,59 @@
+package frontend;
+
+import backend.BitBoardEngine;
+import backend.GameEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** HttpServerApp hot paths: board JSON (org.json vs BoardJson), writing it to an exchange, query parsing. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebBenchmarks {
+    private final String[] queries = {"pos=4", "pos=7&gameId=3f2a9c0d11e4b5a6", "mode=online&level=perfect&size=15&k=5"};
+    private final FakeExchange ex = new FakeExchange();
+    private GameEngine backend;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        backend = new BitBoardEngine();
+        backend.playerMove(4);
+        backend.computerMove();
+    }
+
+    @Benchmark
+    public int buildBoardJson() { return HttpServerApp.buildBoardJson(backend).length(); }
+
+    @Benchmark
+    public long buildBoardJsonSendJson() throws IOException {
+        HttpServerApp.sendJson(ex.reset("/TicTacToe/board"), HttpServerApp.buildBoardJson(backend));
+        return ex.bodySize();
+    }
+
+    @Benchmark
+    public int boardJsonWrite() { return BoardJson.write(backend); }
+
+    @Benchmark
+    public long boardJsonWriteSendBoardJson() throws IOException {
+        HttpServerApp.sendBoardJson(ex.reset("/TicTacToe/board"), BoardJson.write(backend));
+        return ex.bodySize();
+    }
+
+    @Benchmark
+    public int queryToMap() { return HttpServerApp.queryToMap(queries[i++ % queries.length]).size(); }
+}
@@ -0,0 +1,124 @@
+package loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+import frontend.HttpServerApp;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Load test for HttpServerApp: every simulated player plays full games through
+ * /TicTacToe/newgame, /TicTacToe/move and, after a win, /TicTacToe/saveWin.
+ * Starts the server in-process on a free port with a throw-away SQLite DB
+ * unless -Dload.url points at a running one (e.g. http://localhost:8000).
+ *   -Dload.players=1000 -Dload.seconds=30 -Dload.level=random|greedy|perfect
+ */
+public class WebLoadTest {
+    private static final int PLAYERS = Integer.getInteger("load.players", 1000);
+    private static final long SECONDS = Long.getLong("load.seconds", 30);
+    private static final String LEVEL = System.getProperty("load.level", "random");
+
+    private static final LatencyHistogram newGame = new LatencyHistogram("newgame");
+    private static final LatencyHistogram move = new LatencyHistogram("move");
+    private static final LatencyHistogram saveWin = new LatencyHistogram("saveWin");
+
+    private static final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url");
+        HttpServer server = null;
+        Path dir = null;
+        if (url == null) {
+            dir = Files.createTempDirectory("ttt-load");
+            server = HttpServerApp.start(0, dir.resolve("load.db").toString());
+            url = "http://localhost:" + server.getAddress().getPort();
+        }
+
+        String base = url + "/TicTacToe/";
+        try {
+            LoadRun.run("web server " + url, PLAYERS, SECONDS,
+                    (id, deadline) -> play(base, "load" + id, deadline), newGame, move, saveWin);
+        } finally {
+            if (server != null) {
+                HttpServerApp.stop(server);
+                for (String suffix : new String[]{"", "-wal", "-shm"}) Files.deleteIfExists(dir.resolve("load.db" + suffix));
+                deleteTree(dir.resolve("journal"));
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private static long play(String base, String name, long deadline) throws InterruptedException {
+        long games = 0;
+        String gameId = null;
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> r = get(base + "newgame?mode=offline&level=" + LEVEL
+                    + (gameId != null ? "&gameId=" + gameId : ""), newGame);
+            if (r == null) {
+                Thread.sleep(100); // refused or server full: back off a little
+                continue;
+            }
+            gameId = r.headers().firstValue("X-Game-Id").orElse(gameId);
+
+            JSONObject state = new JSONObject(r.body());
+            while (" ".equals(state.getString("winner")) && System.nanoTime() < deadline) {
+                r = get(base + "move?gameId=" + gameId + "&pos=" + randomEmptyCell(state.getJSONArray("board")), move);
+                if (r == null) break;
+                state = new JSONObject(r.body());
+            }
+            String winner = state.getString("winner");
+            if (" ".equals(winner)) continue;
+            games++;
+            if ("X".equals(winner)) get(base + "saveWin?name=" + name, saveWin);
+        }
+        return games;
+    }
+
+    // timed GET; null (and an error on the histogram) for anything but 200
+    private static HttpResponse<String> get(String url, LatencyHistogram h) throws InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET().build();
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<String> r = http.send(req, HttpResponse.BodyHandlers.ofString());
+            if (r.statusCode() != 200) {
+                h.error();
+                return null;
+            }
+            h.record(System.nanoTime() - t0);
+            return r;
+        } catch (IOException e) {
+            h.error();
+            return null;
+        }
+    }
+
+    // the server's game journal folder (segments and snapshots), children first
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    private static int randomEmptyCell(JSONArray board) {
+        int pick = -1, seen = 0;
+        for (int i = 0; i < board.length(); i++) {
+            if ("-".equals(board.getString(i)) && ThreadLocalRandom.current().nextInt(++seen) == 0) pick = i;
+        }
+        return pick;
+    }
+}
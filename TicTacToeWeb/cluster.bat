@@ -0,0 +1,46 @@
+@echo off
+REM ==== Run TicTacToeWeb as a local cluster: router on 8000, game nodes on 8001..800N ====
+REM Usage: cluster.bat [nodes]   (1..9, default 3). Each process opens its own window; stop a node
+REM with Ctrl+C and its games move to the others, start it again and it takes its share back.
+
+REM Path to JDK 17
+set JAVA_HOME=C:\Program Files\Java\jdk-17
+
+REM Sources and output
+set SRC_DIR=C:\Games\TicTacToeWeb\src
+set OUT_DIR=C:\Games\TicTacToeWeb\out\cluster
+
+REM External libraries
+set JSON_LIB=C:\json-20250517.jar
+set SQLITE_JDBC=C:\sqlite-jdbc-3.50.3.0.jar
+
+set NODES=%1
+if "%NODES%"=="" set NODES=3
+
+REM router and nodes only accept each other's /cluster/ calls with this secret
+if "%TTT_CLUSTER_SECRET%"=="" set TTT_CLUSTER_SECRET=%RANDOM%%RANDOM%%RANDOM%%RANDOM%
+
+if exist "%OUT_DIR%" rmdir /s /q "%OUT_DIR%"
+mkdir "%OUT_DIR%"
+
+echo Compiling sources...
+dir /S /B "%SRC_DIR%\*.java" > "%OUT_DIR%\sources.txt"
+"%JAVA_HOME%\bin\javac.exe" -cp "%JSON_LIB%;%SQLITE_JDBC%" -d "%OUT_DIR%" @"%OUT_DIR%\sources.txt"
+if errorlevel 1 (
+    echo Compilation FAILED!
+    pause
+    exit /b
+)
+
+set CP=%OUT_DIR%;%JSON_LIB%;%SQLITE_JDBC%
+start "TicTacToe router :8000" "%JAVA_HOME%\bin\java.exe" -cp "%CP%" -Dttt.http.port=8000 -Dttt.cluster.secret=%TTT_CLUSTER_SECRET% frontend.ClusterRouter
+timeout /t 2 /nobreak >nul
+
+REM every node keeps its own journal folder
+for /L %%i in (1,1,%NODES%) do (
+    start "TicTacToe node :800%%i" "%JAVA_HOME%\bin\java.exe" -cp "%CP%" -Dttt.http.port=800%%i ^
+        -Dttt.cluster.router=localhost:8000 -Dttt.cluster.secret=%TTT_CLUSTER_SECRET% -Dttt.journal=C:\Games\TicTacToeWeb\journal-800%%i frontend.HttpServerApp
+)
+
+echo Router: http://localhost:8000/TicTacToe   ring: http://localhost:8000/cluster/nodes
+pause
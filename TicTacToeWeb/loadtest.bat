@@ -0,0 +1,31 @@
+@echo off
+REM ==== Load test the web server (in-process, free port, temp SQLite DB) ====
+REM Extra JVM flags are passed through, e.g.  loadtest.bat -Dload.players=2000 -Dload.seconds=60
+
+REM Path to JDK 17
+set JAVA_HOME=C:\Program Files\Java\jdk-17
+
+REM Sources and output
+set SRC_DIR=C:\Games\TicTacToeWeb\src
+set BENCH_DIR=C:\Games\TicTacToeWeb\bench
+set OUT_DIR=C:\Games\TicTacToeWeb\out\loadtest
+
+REM External libraries
+set JSON_LIB=C:\json-20250517.jar
+set SQLITE_JDBC=C:\sqlite-jdbc-3.50.3.0.jar
+
+if exist "%OUT_DIR%" rmdir /s /q "%OUT_DIR%"
+mkdir "%OUT_DIR%"
+
+echo Compiling sources and load test...
+dir /S /B "%SRC_DIR%\*.java" "%BENCH_DIR%\loadtest\*.java" > "%OUT_DIR%\sources.txt"
+"%JAVA_HOME%\bin\javac.exe" -cp "%JSON_LIB%;%SQLITE_JDBC%" -d "%OUT_DIR%" @"%OUT_DIR%\sources.txt"
+if errorlevel 1 (
+    echo Compilation FAILED!
+    pause
+    exit /b
+)
+
+"%JAVA_HOME%\bin\java.exe" %* -cp "%OUT_DIR%;%JSON_LIB%;%SQLITE_JDBC%" loadtest.WebLoadTest
+
+pause
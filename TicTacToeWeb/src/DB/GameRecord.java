@@ -0,0 +1,50 @@
+package DB;
+
+/**
+ * One finished game, as stored in the games table.
+ * moves are the cell indexes in play order; X always moves first and the sides
+ * alternate, so the symbols aren't stored.
+ */
+public class GameRecord {
+    public final String playerX;
+    public final String playerO;
+    public final char winner; // 'X', 'O' or 'D' (draw)
+    public final int size;
+    public final int winLength;
+    public final long seed;
+    public final int[] moves;
+    public final long startedAt;  // epoch millis
+    public final long durationMillis;
+
+    public GameRecord(String playerX, String playerO, char winner, int size, int winLength, long seed,
+                      int[] moves, long startedAt, long durationMillis) {
+        this.playerX = playerX;
+        this.playerO = playerO;
+        this.winner = winner;
+        this.size = size;
+        this.winLength = winLength;
+        this.seed = seed;
+        this.moves = moves;
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+    }
+
+    /** First cell X played, or -1 for a game without moves. */
+    public int opening() { return moves.length > 0 ? moves[0] : -1; }
+
+    /** Moves as a BLOB: two bytes (big-endian) per cell index, so any board size fits. */
+    public byte[] packMoves() {
+        byte[] out = new byte[moves.length * 2];
+        for (int i = 0; i < moves.length; i++) {
+            out[2 * i] = (byte) (moves[i] >>> 8);
+            out[2 * i + 1] = (byte) moves[i];
+        }
+        return out;
+    }
+
+    public static int[] unpackMoves(byte[] packed) {
+        int[] out = new int[packed.length / 2];
+        for (int i = 0; i < out.length; i++) out[i] = (packed[2 * i] & 0xff) << 8 | (packed[2 * i + 1] & 0xff);
+        return out;
+    }
+}
@@ -0,0 +1,102 @@
+package DB;
+
+import metrics.Metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous writer of finished games.
+ * - record() only offers to a bounded queue, so the move path never waits for SQLite
+ * - One background thread drains whatever has queued up and inserts it in one transaction
+ * - When the queue is full (DB far behind or down) new games are dropped and counted, not blocked on
+ * - close() / JVM shutdown writes what is still queued
+ */
+public class GameRecorder {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_MILLIS = 1000;
+
+    private static final Metrics.Counter RECORDED = Metrics.counter("ttt_games_recorded_total", "Finished games written to the games table");
+    private static final Metrics.Counter DROPPED = Metrics.counter("ttt_games_dropped_total", "Finished games lost: queue full or DB failing");
+    private static final Metrics.Gauge QUEUED = Metrics.gauge("ttt_games_queued", "Finished games waiting to be written");
+    private static final Metrics.Histogram BATCH = Metrics.histogram("ttt_games_batch_duration_seconds", "Time to insert one batch of games");
+
+    private final DatabaseHandler db;
+    private final int maxBatch;
+    private final BlockingQueue<GameRecord> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public GameRecorder(DatabaseHandler db, int capacity, int maxBatch) {
+        this.db = db;
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::run, "GameRecorder");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "GameRecorderShutdownFlush"));
+    }
+
+    /** Queue a finished game; false if it was dropped because the queue is full or the recorder closed. */
+    public boolean record(GameRecord game) {
+        if (running && queue.offer(game)) {
+            QUEUED.inc();
+            return true;
+        }
+        DROPPED.inc();
+        return false;
+    }
+
+    public int queued() { return queue.size(); }
+
+    /** Stop taking games, write the queued ones and wait (a few seconds at most) for the writer. Safe to call more than once. */
+    public void close() {
+        running = false;
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<GameRecord> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                GameRecord first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                QUEUED.add(-batch.size());
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    private void write(List<GameRecord> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                db.addGames(batch);
+                BATCH.observeSince(start);
+                RECORDED.add(batch.size());
+                return;
+            } catch (SQLException e) {
+                if (!running || attempt == MAX_ATTEMPTS) {
+                    DROPPED.add(batch.size());
+                    System.err.println("Dropped " + batch.size() + " game records: " + e.getMessage());
+                    return;
+                }
+                System.err.println("Recording games failed (will retry): " + e.getMessage());
+                Thread.sleep(RETRY_MILLIS);
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package DB;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elo ratings for every named player (CPU levels play as "cpu:random", "cpu:greedy", "cpu:perfect").
+ * - recordGame() updates both sides right away, in memory
+ * - Ranks come from a Fenwick tree counting players per rating point plus an order-statistic tree
+ *   of the names on each point, so "my rank" and every row of a leaderboard page are O(log n)
+ *   lookups, no ORDER BY over the table and no walk over a crowded point like 1200
+ * - Changed players are written to the ratings table in one transaction every flushMillis
+ *   and once more on close / JVM shutdown (same write-behind as LeaderboardService)
+ * Unnamed players ("guest") aren't rated: the name is shared by everybody.
+ */
+public class RatingService {
+    public static final double INITIAL = 1200;
+    private static final int MAX_RATING = 4000;   // ratings are clamped into [0, MAX_RATING) for the index
+    private static final int PROVISIONAL_GAMES = 30;
+    private static final double K_PROVISIONAL = 32, K = 16;
+
+    /** Counts per bucket; index 1 is the best bucket, so prefix sums count players rated at or above a bucket. */
+    private static final class Fenwick {
+        private final int[] tree;
+
+        Fenwick(int n) { tree = new int[n + 1]; }
+
+        void add(int i, int delta) {
+            for (; i < tree.length; i += i & -i) tree[i] += delta;
+        }
+
+        // sum of buckets 1..i
+        int prefix(int i) {
+            int s = 0;
+            for (; i > 0; i -= i & -i) s += tree[i];
+            return s;
+        }
+
+        // smallest i with prefix(i) >= k (k >= 1, at most the total)
+        int find(int k) {
+            int pos = 0;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next < tree.length && tree[next] < k) {
+                    pos = next;
+                    k -= tree[next];
+                }
+            }
+            return pos + 1;
+        }
+    }
+
+    /** Names on one rating point in order, as a treap with subtree sizes: add, remove, indexOf and get are O(log n). */
+    private static final class Names {
+        private static final class Node {
+            final String name;
+            final int priority = ThreadLocalRandom.current().nextInt();
+            Node left, right;
+            int size = 1;
+
+            Node(String name) { this.name = name; }
+        }
+
+        private Node root;
+
+        int size() { return size(root); }
+
+        void add(String name) { root = add(root, new Node(name)); }
+
+        void remove(String name) { root = remove(root, name); }
+
+        // number of names before this one
+        int indexOf(String name) {
+            int i = 0;
+            Node n = root;
+            while (n != null) {
+                int c = name.compareTo(n.name);
+                if (c == 0) return i + size(n.left);
+                if (c < 0) {
+                    n = n.left;
+                } else {
+                    i += size(n.left) + 1;
+                    n = n.right;
+                }
+            }
+            return i;
+        }
+
+        // the i-th name, 0 <= i < size()
+        String get(int i) {
+            Node n = root;
+            while (true) {
+                int left = size(n.left);
+                if (i == left) return n.name;
+                if (i < left) {
+                    n = n.left;
+                } else {
+                    i -= left + 1;
+                    n = n.right;
+                }
+            }
+        }
+
+        private static int size(Node n) { return n == null ? 0 : n.size; }
+
+        private static Node update(Node n) {
+            n.size = size(n.left) + size(n.right) + 1;
+            return n;
+        }
+
+        private static Node add(Node n, Node x) {
+            if (n == null) return x;
+            if (x.priority > n.priority) { // x goes here: split n around it
+                Node[] halves = split(n, x.name);
+                x.left = halves[0];
+                x.right = halves[1];
+                return update(x);
+            }
+            if (x.name.compareTo(n.name) < 0) n.left = add(n.left, x);
+            else n.right = add(n.right, x);
+            return update(n);
+        }
+
+        private static Node remove(Node n, String name) {
+            if (n == null) return null;
+            int c = name.compareTo(n.name);
+            if (c == 0) return merge(n.left, n.right);
+            if (c < 0) n.left = remove(n.left, name);
+            else n.right = remove(n.right, name);
+            return update(n);
+        }
+
+        // {names before key, names from key on}
+        private static Node[] split(Node n, String key) {
+            if (n == null) return new Node[2];
+            Node[] halves;
+            if (n.name.compareTo(key) < 0) {
+                halves = split(n.right, key);
+                n.right = halves[0];
+                halves[0] = update(n);
+            } else {
+                halves = split(n.left, key);
+                n.left = halves[1];
+                halves[1] = update(n);
+            }
+            return halves;
+        }
+
+        // every name of a comes before every name of b
+        private static Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                return update(a);
+            }
+            b.left = merge(a, b.left);
+            return update(b);
+        }
+    }
+
+    private static final class Player {
+        final String name;
+        double rating = INITIAL;
+        int games, wins, losses, draws;
+
+        Player(String name) { this.name = name; }
+    }
+
+    private final DatabaseHandler db;
+    private final Map<String, Player> players = new ConcurrentHashMap<>(); // guarded by this
+    private final Fenwick index = new Fenwick(MAX_RATING);
+    private final Names[] buckets = new Names[MAX_RATING + 1]; // names per index slot, guarded by this
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+
+    public RatingService(DatabaseHandler db, long flushMillis) throws SQLException {
+        this.db = db;
+        for (PlayerRating r : db.loadRatings()) {
+            Player p = new Player(r.username);
+            p.rating = r.rating;
+            p.games = r.games;
+            p.wins = r.wins;
+            p.losses = r.losses;
+            p.draws = r.draws;
+            players.put(p.name, p);
+            insert(p);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "RatingFlusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (SQLException | RuntimeException e) { // an escaped exception would cancel the schedule
+                System.err.println("Rating flush failed (will retry): " + e);
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "RatingShutdownFlush"));
+    }
+
+    /** Whether games of this player count for ratings. */
+    public static boolean isRated(String name) {
+        return name != null && !name.isEmpty() && !name.equals("guest");
+    }
+
+    /** Apply one finished game (winner 'X', 'O' or 'D'); ignored unless both sides are rated. */
+    public synchronized void recordGame(String playerX, String playerO, char winner) {
+        if (!isRated(playerX) || !isRated(playerO) || playerX.equals(playerO)) return;
+        Player x = players.computeIfAbsent(playerX, Player::new);
+        Player o = players.computeIfAbsent(playerO, Player::new);
+        double scoreX = winner == 'X' ? 1 : winner == 'O' ? 0 : 0.5;
+        double expectedX = 1 / (1 + Math.pow(10, (o.rating - x.rating) / 400));
+        double deltaX = kFactor(x) * (scoreX - expectedX);
+        double deltaO = kFactor(o) * ((1 - scoreX) - (1 - expectedX));
+
+        if (x.games > 0) remove(x);
+        if (o.games > 0) remove(o);
+        x.rating += deltaX;
+        o.rating += deltaO;
+        count(x, scoreX);
+        count(o, 1 - scoreX);
+        insert(x);
+        insert(o);
+        dirty.add(x.name);
+        dirty.add(o.name);
+    }
+
+    /** Current rating, INITIAL for players without games. */
+    public double getRating(String name) {
+        Player p = players.get(name);
+        if (p == null) return INITIAL;
+        synchronized (this) { return p.rating; }
+    }
+
+    /** Rank and record of one player, or null if they never played a rated game. */
+    public synchronized PlayerRating getRank(String name) {
+        Player p = players.get(name);
+        if (p == null || p.games == 0) return null;
+        int slot = slot(p.rating);
+        int rank = index.prefix(slot - 1) + buckets[slot].indexOf(name) + 1;
+        return snapshot(rank, p);
+    }
+
+    /**
+     * One page of the rating list, best first; O(log n) per row.
+     * Empty for a non-positive limit, a negative offset or an offset past the last player.
+     */
+    public synchronized List<PlayerRating> getPage(int limit, int offset) {
+        int total = index.prefix(MAX_RATING);
+        if (limit <= 0 || offset < 0 || offset >= total) return new ArrayList<>();
+        int end = (int) Math.min((long) offset + limit, total); // rank of the last row, offset + limit may overflow
+        List<PlayerRating> out = new ArrayList<>(end - offset);
+        int rank = offset + 1;
+        while (rank <= end) {
+            int slot = index.find(rank);
+            Names bucket = buckets[slot];
+            // players of this bucket on earlier pages come first
+            for (int i = rank - index.prefix(slot - 1) - 1; i < bucket.size() && rank <= end; i++) {
+                out.add(snapshot(rank++, players.get(bucket.get(i))));
+            }
+        }
+        return out;
+    }
+
+    public int size() { return index.prefix(MAX_RATING); }
+
+    /** Write every changed player in one transaction. */
+    public void flush() throws SQLException {
+        if (dirty.isEmpty()) return;
+        List<PlayerRating> batch = new ArrayList<>();
+        synchronized (this) {
+            for (String name : dirty) {
+                dirty.remove(name);
+                batch.add(snapshot(0, players.get(name)));
+            }
+        }
+        try {
+            db.saveRatings(batch);
+        } catch (SQLException e) {
+            for (PlayerRating r : batch) dirty.add(r.username); // retried by the next flush
+            throw e;
+        }
+    }
+
+    /** Stop the background flusher and write what is left. Safe to call more than once. */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Rating final flush failed: " + e.getMessage());
+        }
+    }
+
+    private static double kFactor(Player p) {
+        return p.games < PROVISIONAL_GAMES ? K_PROVISIONAL : K;
+    }
+
+    private static void count(Player p, double score) {
+        p.games++;
+        if (score == 1) p.wins++;
+        else if (score == 0) p.losses++;
+        else p.draws++;
+    }
+
+    // index slot of a rating: 1 = best, one slot per rating point
+    private static int slot(double rating) {
+        int bucket = (int) Math.max(0, Math.min(MAX_RATING - 1, Math.floor(rating)));
+        return MAX_RATING - bucket;
+    }
+
+    private void insert(Player p) {
+        int slot = slot(p.rating);
+        if (buckets[slot] == null) buckets[slot] = new Names();
+        buckets[slot].add(p.name);
+        index.add(slot, 1);
+    }
+
+    private void remove(Player p) {
+        int slot = slot(p.rating);
+        buckets[slot].remove(p.name);
+        index.add(slot, -1);
+    }
+
+    private static PlayerRating snapshot(int rank, Player p) {
+        return new PlayerRating(rank, p.name, p.rating, p.games, p.wins, p.losses, p.draws);
+    }
+}
@@ -0,0 +1,56 @@
+package backend;
+
+/**
+ * Common API of the game engines, so the UI / servers can switch implementations.
+ * Player is X, CPU is O; winner is ' ' while playing, 'X'/'O' when won, 'D' for draw.
+ */
+public interface GameEngine {
+
+    /** Classic 3x3 boards get the bitboard engine, anything else the generic N x N one. */
+    static GameEngine create(int size, int winLength) {
+        return size == 3 && winLength == 3 ? new BitBoardEngine() : new GridEngine(size, winLength);
+    }
+
+    /** True if create(size, winLength) accepts the shape, so callers can check before touching a game. */
+    static boolean isValidShape(int size, int winLength) {
+        return GridEngine.isValidShape(size, winLength);
+    }
+
+    void reset();
+
+    // board is size*size cells, row by row
+    default int getSize() { return 3; }
+    default int getWinLength() { return 3; }
+
+    char[] getBoard();
+    char getWinner();
+    boolean isGameOver();
+
+    // player's move (X), false if the cell is taken / out of range
+    boolean playerMove(int pos);
+
+    // CPU move (O), no-op when the game is over
+    void computerMove();
+
+    // CPU strength used by computerMove(), kept across reset()
+    void setDifficulty(Difficulty level);
+    Difficulty getDifficulty();
+
+    // seed of the CPU's random choices in this game; reset() draws a new one.
+    // setSeed(s) right after reset() replays a logged game: same seed + same player moves = same CPU moves
+    // (except for time-bounded searches, whose depth depends on the machine)
+    long getSeed();
+    void setSeed(long seed);
+
+    // used by UI to place any symbol (if needed)
+    boolean placeSymbol(int pos, char s);
+
+    // replaces the position; the move log starts over (the history is unknown)
+    void setState(char[] board, char winner);
+
+    // every move since reset() / setState(), oldest first
+    MoveLog getMoveLog();
+
+    // take back the newest move (one symbol), false if there is none
+    boolean undo();
+}
@@ -0,0 +1,45 @@
+package backend;
+
+import java.util.Arrays;
+
+/**
+ * Move history of one game, one int per move: cell index in the high 16 bits,
+ * symbol char in the low 16 (pos << 16 | 'X'). No object per move, so keeping
+ * the log costs a few bytes per move and nothing on the hot path.
+ * Engines append / remove; everyone else only reads.
+ */
+public final class MoveLog {
+    private int[] moves = new int[16];
+    private int size;
+
+    public int size() { return size; }
+
+    public int pos(int i) { return posOf(get(i)); }
+
+    public char symbol(int i) { return symbolOf(get(i)); }
+
+    /** Packed move i (pos << 16 | symbol). */
+    public int get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("move " + i + " of " + size);
+        return moves[i];
+    }
+
+    /** Copy of the packed moves, oldest first. */
+    public int[] toArray() { return Arrays.copyOf(moves, size); }
+
+    public static int posOf(int packed) { return packed >>> 16; }
+
+    public static char symbolOf(int packed) { return (char) packed; }
+
+    void add(int pos, char s) {
+        if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+        moves[size++] = pos << 16 | s;
+    }
+
+    /** Drop the newest move and return it packed, or -1 if the log is empty. */
+    int removeLast() {
+        return size == 0 ? -1 : moves[--size];
+    }
+
+    void clear() { size = 0; }
+}
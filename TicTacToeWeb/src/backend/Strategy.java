@@ -0,0 +1,47 @@
+package backend;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A 3x3 move policy on the X / O bit masks of BitBoardEngine / CpuPlayer, so engines
+ * and the tournament runner can pit policies against each other. Implementations must
+ * not keep per-game state: one instance is shared by many games (and threads);
+ * all randomness comes from the rand argument.
+ */
+public interface Strategy {
+
+    String name();
+
+    /** Cell (0..8) for the side playing {@code asX ? X : O}, or -1 if the board is full. */
+    int pickMove(int xMask, int oMask, boolean asX, RandomGenerator rand);
+
+    /** The built-in CPU levels: random, greedy (win / block / center / corner), perfect (solved minimax). */
+    static Strategy of(Difficulty level) {
+        return Level.ALL[level.ordinal()];
+    }
+
+    /** A Difficulty as a Strategy, one shared instance per level. */
+    final class Level implements Strategy {
+        private static final Level[] ALL = new Level[Difficulty.values().length];
+        static {
+            for (Difficulty d : Difficulty.values()) ALL[d.ordinal()] = new Level(d);
+        }
+
+        private final Difficulty level;
+        private final String name;
+
+        private Level(Difficulty level) {
+            this.level = level;
+            this.name = level.name().toLowerCase();
+        }
+
+        @Override public String name() { return name; }
+
+        @Override
+        public int pickMove(int xMask, int oMask, boolean asX, RandomGenerator rand) {
+            return CpuPlayer.pickMove(level, xMask, oMask, asX, rand);
+        }
+
+        @Override public String toString() { return name; }
+    }
+}
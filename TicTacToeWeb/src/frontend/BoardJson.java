@@ -0,0 +1,82 @@
+package frontend;
+
+import backend.GameEngine;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Board state JSON written straight into a reused per-thread byte buffer, for the
+ * /move, /board, /newgame and SSE responses. Produces exactly what
+ * HttpServerApp.buildBoardJson(...).toString() does (org.json keeps "winner" first):
+ *   {"winner":" ","board":["-","X","O",...]}
+ * Board chars are plain ASCII ('-', 'X', 'O', winner also ' ' / 'D'); anything that would
+ * need JSON escaping falls back to org.json so the output stays identical.
+ */
+final class BoardJson {
+    private static final byte[] HEAD = "{\"winner\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIDDLE = "\",\"board\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TAIL = "]}".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[length(9)]);
+
+    private BoardJson() { }
+
+    /** Bytes of {"winner":..,"board":[..]} for a board of n cells. */
+    static int length(int n) {
+        return HEAD.length + 1 + MIDDLE.length + (n == 0 ? 0 : 4 * n - 1) + TAIL.length;
+    }
+
+    /**
+     * Serialize the engine's state into this thread's buffer; the JSON is buffer()[0, returned length).
+     * The buffer stays valid until the same thread calls write again.
+     */
+    static int write(GameEngine backend) {
+        char[] board = backend.getBoard();
+        char winner = backend.getWinner();
+        byte[] out = BUFFER.get();
+        int len = length(board.length);
+        if (out.length < len) {
+            out = new byte[len];
+            BUFFER.set(out);
+        }
+        if (!plain(winner)) return fallback(backend);
+
+        System.arraycopy(HEAD, 0, out, 0, HEAD.length);
+        int p = HEAD.length;
+        out[p++] = (byte) winner;
+        System.arraycopy(MIDDLE, 0, out, p, MIDDLE.length);
+        p += MIDDLE.length;
+        for (int i = 0; i < board.length; i++) {
+            char c = board[i];
+            if (!plain(c)) return fallback(backend);
+            if (i > 0) out[p++] = ',';
+            out[p++] = '"';
+            out[p++] = (byte) c;
+            out[p++] = '"';
+        }
+        System.arraycopy(TAIL, 0, out, p, TAIL.length);
+        return p + TAIL.length;
+    }
+
+    /** This thread's buffer, holding the output of the last write(). */
+    static byte[] buffer() {
+        return BUFFER.get();
+    }
+
+    // printable ASCII that JSON takes as-is
+    private static boolean plain(char c) {
+        return c >= 0x20 && c < 0x7f && c != '"' && c != '\\' && c != '/';
+    }
+
+    // odd character somewhere: let org.json do the escaping, still into the shared buffer
+    private static int fallback(GameEngine backend) {
+        byte[] bytes = HttpServerApp.buildBoardJson(backend).toString().getBytes(StandardCharsets.UTF_8);
+        byte[] out = BUFFER.get();
+        if (out.length < bytes.length) {
+            out = new byte[bytes.length];
+            BUFFER.set(out);
+        }
+        System.arraycopy(bytes, 0, out, 0, bytes.length);
+        return bytes.length;
+    }
+}
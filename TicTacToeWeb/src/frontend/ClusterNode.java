@@ -0,0 +1,239 @@
+package frontend;
+
+import backend.Difficulty;
+import backend.GameEngine;
+import backend.MoveLog;
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Metrics;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This server as one node of a cluster behind a ClusterRouter (-Dttt.cluster.router=host:port).
+ * - join() once the server listens: the router adds the node to its hash ring and has the
+ *   other nodes hand over the games that now hash here
+ * - leave() on shutdown: the router takes the node out of the ring and has it hand every game
+ *   to its new owner
+ * - rebalance() runs when the router calls POST /cluster/rebalance with the new member list:
+ *   each game this node no longer owns is POSTed to its owner's /cluster/import and dropped here,
+ *   unless the owner is at its game cap and refuses it
+ * The router holds client requests while a rebalance runs, so games don't change while they move.
+ * Every /cluster/ call, to the router or between nodes, carries the shared -Dttt.cluster.secret in
+ * X-Cluster-Secret; calls without it get 403, so a browser can't move games or join a fake node.
+ */
+public class ClusterNode {
+    private static final int BATCH = 500; // games per /cluster/import request
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Metrics.Counter SENT = Metrics.counter("ttt_cluster_games_sent_total", "Games handed to another node");
+    private static final Metrics.Counter RECEIVED = Metrics.counter("ttt_cluster_games_received_total", "Games taken over from another node");
+
+    private final String self;   // host:port the router and the other nodes reach this node at
+    private final String router;
+    private final String secret;
+    private final GameRegistry games;
+    private final GameJournal journal; // null when journaling is off
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final AtomicBoolean left = new AtomicBoolean();
+
+    public ClusterNode(String self, String router, String secret, GameRegistry games, GameJournal journal) {
+        this.self = self;
+        this.router = router;
+        this.secret = secret;
+        this.games = games;
+        this.journal = journal;
+    }
+
+    public String getSelf() { return self; }
+
+    /** -Dttt.cluster.secret, the same on the router and every node; cluster mode doesn't start without it. */
+    static String secret() {
+        String s = System.getProperty("ttt.cluster.secret", "");
+        if (s.isEmpty()) {
+            throw new IllegalStateException("Cluster mode needs -Dttt.cluster.secret (the same on the router and every node)");
+        }
+        return s;
+    }
+
+    /** Whether a /cluster/ request carries the secret; compared in constant time. */
+    static boolean authorized(HttpExchange ex, String secret) {
+        String got = ex.getRequestHeaders().getFirst(SECRET_HEADER);
+        return got != null && MessageDigest.isEqual(got.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean authorized(HttpExchange ex) { return authorized(ex, secret); }
+
+    /** Ask the router to add this node; false (and the node serves nobody) if the router can't be reached. */
+    public boolean join() {
+        try {
+            post(router, "/cluster/join?node=" + URLEncoder.encode(self, StandardCharsets.UTF_8), "");
+            System.out.println("Joined cluster at " + router + " as " + self);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Cluster join failed (" + router + "): " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Ask the router to move this node's games elsewhere; returns once they are handed off. Runs once. */
+    public void leave() {
+        if (!left.compareAndSet(false, true)) return;
+        try {
+            post(router, "/cluster/leave?node=" + URLEncoder.encode(self, StandardCharsets.UTF_8), "");
+            System.out.println("Left cluster at " + router);
+        } catch (IOException e) {
+            System.err.println("Cluster leave failed (" + router + "), games stay here: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hand every game that ring doesn't place on this node to its owner. A batch its owner
+     * can't take, or a game it has no room for, stays here (and is logged). Returns the number of games sent.
+     */
+    public int rebalance(HashRing ring) {
+        Map<String, List<GameRegistry.Game>> byOwner = new HashMap<>();
+        for (GameRegistry.Game g : games.all()) {
+            String owner = ring.owner(g.getWatchToken());
+            if (owner != null && !owner.equals(self)) byOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(g);
+        }
+        int sent = 0;
+        for (Map.Entry<String, List<GameRegistry.Game>> e : byOwner.entrySet()) {
+            List<GameRegistry.Game> list = e.getValue();
+            for (int from = 0; from < list.size(); from += BATCH) {
+                List<GameRegistry.Game> batch = list.subList(from, Math.min(list.size(), from + BATCH));
+                JSONArray arr = new JSONArray();
+                for (GameRegistry.Game g : batch) {
+                    synchronized (g) { arr.put(export(g)); }
+                }
+                Set<String> refused = new HashSet<>();
+                try {
+                    JSONArray r = new JSONObject(post(e.getKey(), "/cluster/import", new JSONObject().put("games", arr).toString()))
+                            .optJSONArray("refused");
+                    for (int i = 0; r != null && i < r.length(); i++) refused.add(r.getString(i));
+                } catch (IOException | JSONException ex) {
+                    System.err.println("Handoff of " + batch.size() + " games to " + e.getKey() + " failed: " + ex.getMessage());
+                    continue;
+                }
+                if (!refused.isEmpty()) System.err.println(e.getKey() + " is full, " + refused.size() + " games stay here");
+                for (GameRegistry.Game g : batch) {
+                    if (refused.contains(g.getId())) continue;
+                    synchronized (g) {
+                        if (journal != null) journal.logDrop(g);
+                    }
+                    games.remove(g.getId());
+                    sent++;
+                }
+            }
+        }
+        if (journal != null) journal.sync();
+        SENT.add(sent);
+        if (sent > 0) System.out.println("Handed " + sent + " games to " + byOwner.keySet());
+        return sent;
+    }
+
+    /**
+     * Take over the games another node sent ({"games": [...]} as built by export()). Returns
+     * {"imported": n, "refused": [ids]}, refused being the games the registry cap left no room for.
+     */
+    public JSONObject importGames(JSONObject body) {
+        JSONArray arr = body.getJSONArray("games");
+        JSONArray refused = new JSONArray();
+        int n = 0;
+        for (int i = 0; i < arr.length(); i++) {
+            JSONObject j = arr.getJSONObject(i);
+            GameEngine engine;
+            try {
+                engine = GameEngine.create(j.getInt("size"), j.getInt("k"));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            engine.setDifficulty(Difficulty.parse(j.optString("level", null), engine.getDifficulty()));
+            engine.setSeed(Long.parseLong(j.getString("seed")));
+            JSONArray moves = j.getJSONArray("moves");
+            for (int m = 0; m < moves.length(); m++) {
+                JSONArray mv = moves.getJSONArray(m);
+                engine.placeSymbol(mv.getInt(0), mv.getString(1).charAt(0));
+            }
+
+            String id = j.getString("id");
+            GameRegistry.Game old = games.get(id); // a stale copy, e.g. recovered from this node's journal
+            GameRegistry.Game g = games.restore(id);
+            if (g == null) {
+                refused.put(id);
+                continue;
+            }
+            synchronized (g) {
+                g.setBackend(engine);
+                g.begin(j.optString("player", "guest"));
+                g.setStartedAt(j.optLong("startedAt", g.getStartedAt()));
+                if (journal != null) {
+                    // continue the old copy's sequence, or replay would skip these records as already seen
+                    if (old != null) g.setJournalSeq(old.getJournalSeq());
+                    journal.logNew(g);
+                    journal.logMoves(g, 0);
+                }
+            }
+            n++;
+        }
+        if (journal != null) journal.sync();
+        RECEIVED.add(n);
+        return new JSONObject().put("imported", n).put("refused", refused);
+    }
+
+    // caller holds the game's lock
+    private static JSONObject export(GameRegistry.Game g) {
+        GameEngine e = g.getBackend();
+        MoveLog log = e.getMoveLog();
+        JSONArray moves = new JSONArray();
+        for (int i = 0; i < log.size(); i++) moves.put(new JSONArray().put(log.pos(i)).put(String.valueOf(log.symbol(i))));
+        return new JSONObject()
+                .put("id", g.getId())
+                .put("size", e.getSize())
+                .put("k", e.getWinLength())
+                .put("level", e.getDifficulty().name().toLowerCase())
+                .put("seed", String.valueOf(e.getSeed()))
+                .put("player", g.getPlayer())
+                .put("startedAt", g.getStartedAt())
+                .put("moves", moves);
+    }
+
+    // the response body
+    private String post(String node, String pathAndQuery, String json) throws IOException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://" + node + pathAndQuery))
+                .timeout(Duration.ofSeconds(60)) // a join waits for the other nodes' handoffs
+                .header("Content-Type", "application/json; charset=utf-8")
+                .header(SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> resp;
+        try {
+            resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted");
+        }
+        if (resp.statusCode() / 100 != 2) throw new IOException("HTTP " + resp.statusCode() + " " + resp.body());
+        return resp.body();
+    }
+}
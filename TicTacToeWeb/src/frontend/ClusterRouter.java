@@ -0,0 +1,416 @@
+package frontend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import metrics.Metrics;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Front router of cluster mode: one address for the browsers, several HttpServerApp nodes behind it.
+ * - Every request that names a game (?gameId=, the gameId cookie, /games/{id}/..., or a spectator's
+ *   ?watch= token) is proxied to the node owning the game on a consistent-hash ring (HashRing),
+ *   keyed by the game's watch token; other requests go round-robin
+ * - /newgame without an id gets a fresh id here, so the game is created right on its owner
+ * - Nodes register themselves (POST /cluster/join, /cluster/leave); on every membership change the
+ *   router holds client requests, has the nodes hand games to their new owners
+ *   (POST /cluster/rebalance on each node), then switches to the new ring
+ * - A node that refuses a connection (or doesn't accept one within 2 s) becomes suspect and the request
+ *   is retried once; a health check then probes it every second and takes it off the ring only after
+ *   -Dttt.cluster.downAfter (default 3) failed checks in a row, so a restart or a long pause doesn't
+ *   cost a healthy node its games
+ * - join / leave and the nodes' /cluster/rebalance and /cluster/import need the shared secret
+ *   (-Dttt.cluster.secret, sent as X-Cluster-Secret, see ClusterNode); /cluster/* is never proxied
+ *
+ * Try it on localhost:
+ *   java -Dttt.http.port=8000 -Dttt.cluster.secret=s3cret frontend.ClusterRouter
+ *   java -Dttt.http.port=8001 -Dttt.cluster.router=localhost:8000 -Dttt.cluster.secret=s3cret -Dttt.journal=journal-8001 frontend.HttpServerApp
+ *   java -Dttt.http.port=8002 -Dttt.cluster.router=localhost:8000 -Dttt.cluster.secret=s3cret -Dttt.journal=journal-8002 frontend.HttpServerApp
+ * then open http://localhost:8000/TicTacToe. -Dttt.cluster.nodes=host:port,... seeds the ring at startup,
+ * -Dttt.cluster.vnodes (default 128) sets the points per node.
+ */
+public class ClusterRouter {
+    private static final int MAX_BODY = 1 << 20;
+    private static final String GAMES_PREFIX = "/TicTacToe/games/";
+    // request headers passed on to the node; the rest (Host, Connection, ...) belong to this hop
+    private static final Set<String> FORWARDED = Set.of("accept", "accept-encoding", "content-type",
+            "cookie", "if-none-match", "last-event-id", "user-agent");
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "content-length", "date",
+            "keep-alive", "transfer-encoding");
+
+    private static final Metrics.Counter PROXIED = Metrics.counter("ttt_router_requests_total", "Requests proxied to a node");
+    private static final Metrics.Counter FAILOVERS = Metrics.counter("ttt_router_failovers_total",
+            "Nodes dropped because they failed their health checks");
+    private static final int DOWN_AFTER = Integer.getInteger("ttt.cluster.downAfter", 3);
+    private static final Metrics.Histogram REBALANCE = Metrics.histogram("ttt_router_rebalance_duration_seconds",
+            "Time client requests were held while games moved between nodes");
+
+    private final String secret;
+    private volatile HashRing ring;
+    // client requests hold the read lock, a membership change the write lock
+    private final ReentrantReadWriteLock pause = new ReentrantReadWriteLock(true);
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final SecureRandom ids = new SecureRandom();
+    private final AtomicInteger next = new AtomicInteger();
+    // nodes a request couldn't connect to, with their failed health checks in a row
+    private final Map<String, AtomicInteger> suspects = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService health = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "RouterHealth");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ClusterRouter(List<String> nodes, int vnodes, String secret) {
+        this.secret = secret;
+        this.ring = new HashRing(nodes, vnodes);
+        Metrics.gauge("ttt_router_nodes", "Nodes on the hash ring", () -> ring.nodes().size());
+        Metrics.gauge("ttt_router_nodes_suspect", "Nodes that refused a connection and are being health-checked",
+                () -> suspects.size());
+        health.scheduleWithFixedDelay(this::checkSuspects, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.getInteger("ttt.http.port", HttpServerApp.PORT);
+        String seed = System.getProperty("ttt.cluster.nodes", "");
+        List<String> nodes = seed.isEmpty() ? Collections.emptyList() : Arrays.asList(seed.split("\\s*,\\s*"));
+        new ClusterRouter(nodes, Integer.getInteger("ttt.cluster.vnodes", 128), ClusterNode.secret()).start(port);
+        System.out.println("Cluster router started. Open: http://localhost:" + port + "/TicTacToe");
+    }
+
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), Integer.getInteger("ttt.http.backlog", 1024));
+        server.createContext("/TicTacToe", this::proxy);
+        server.createContext("/cluster/join", ex -> membership(ex, true));
+        server.createContext("/cluster/leave", ex -> membership(ex, false));
+        server.createContext("/cluster/nodes", this::nodes);
+        server.createContext("/cluster/metrics", ex -> {
+            byte[] bytes = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        });
+        // proxied /events streams hold a thread each, so don't cap the pool
+        AtomicInteger n = new AtomicInteger();
+        server.setExecutor(Executors.newCachedThreadPool(r -> new Thread(r, "router-" + n.incrementAndGet())));
+        server.start();
+        return server;
+    }
+
+    // -----------------------
+    // Proxy
+    // -----------------------
+
+    private void proxy(HttpExchange ex) throws IOException {
+        byte[] body = ex.getRequestBody().readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            sendText(ex, 413, "Body too large");
+            return;
+        }
+        String path = ex.getRequestURI().getRawPath();
+        String query = ex.getRequestURI().getRawQuery();
+        String key = ringKey(ex, path, query);
+        if (key == null && path.equals("/TicTacToe/newgame")) {
+            // pick the id here so the game is born on the node that will own it
+            String id = Long.toHexString(ids.nextLong());
+            query = (query == null || query.isEmpty() ? "" : query + "&") + "gameId=" + id;
+            key = GameRegistry.watchToken(id);
+        }
+        // an /events stream can stay open for hours; it ends by itself when its game moves away
+        // (the browser then reconnects through here to the new owner)
+        boolean stream = path.equals("/TicTacToe/events");
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            String node = null;
+            HttpResponse<InputStream> resp = null;
+            // held until the node's response headers arrive: by then the node has applied the request,
+            // so a rebalance can't move the game under it; the body is copied after, so a slow client
+            // doesn't hold up a rebalance (the write lock is fair, it would stall every request too)
+            Lock lock = pause.readLock();
+            lock.lock();
+            try {
+                HashRing r = ring;
+                node = key != null ? r.owner(key) : any(r);
+                if (node == null) {
+                    sendText(ex, 503, "No game servers in the cluster");
+                    return;
+                }
+                resp = http.send(forward(ex, node, path, query, body), HttpResponse.BodyHandlers.ofInputStream());
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                suspect(node); // health-checked from now on; the ring stays as it is
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendText(ex, 503, "Interrupted");
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (resp != null) {
+                relay(ex, resp, stream);
+                return;
+            }
+        }
+        sendText(ex, 503, "Game server unavailable, try again");
+    }
+
+    private static HttpRequest forward(HttpExchange ex, String node, String path, String query, byte[] body) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create("http://" + node + path + (query == null ? "" : "?" + query)))
+                .timeout(Duration.ofSeconds(30)) // until the node's response headers; streams stay open after
+                .method(ex.getRequestMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        ex.getRequestHeaders().forEach((name, values) -> {
+            if (!FORWARDED.contains(name.toLowerCase(Locale.ROOT))) return;
+            for (String v : values) b.header(name, v);
+        });
+        b.header("X-Forwarded-For", ex.getRemoteAddress().getAddress().getHostAddress());
+        PROXIED.inc();
+        return b.build();
+    }
+
+    // copy status, headers and body back; streams are flushed as the node writes them
+    private static void relay(HttpExchange ex, HttpResponse<InputStream> resp, boolean stream) throws IOException {
+        resp.headers().map().forEach((name, values) -> {
+            if (!HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))) ex.getResponseHeaders().put(name, values);
+        });
+        int code = resp.statusCode();
+        long len = resp.headers().firstValueAsLong("content-length").orElse(-1);
+        try (InputStream in = resp.body()) {
+            if ("HEAD".equalsIgnoreCase(ex.getRequestMethod()) || code == 204 || code == 304 || len == 0) {
+                ex.sendResponseHeaders(code, -1);
+                ex.close();
+                return;
+            }
+            ex.sendResponseHeaders(code, Math.max(len, 0)); // 0 = chunked
+            try (OutputStream os = ex.getResponseBody()) {
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    os.write(buf, 0, n);
+                    if (stream) os.flush();
+                }
+            }
+        }
+    }
+
+    // ring key of the game a request is about: the ?watch= token as is, else the watch token of the id
+    // from ?gameId=, the gameId cookie or /TicTacToe/games/{id}/...; null for requests about no game
+    private static String ringKey(HttpExchange ex, String path, String query) {
+        if (query != null) {
+            for (String p : query.split("&")) {
+                if (p.startsWith("watch=")) return queryValue(p.substring(6));
+            }
+        }
+        String id = gameId(ex, path, query);
+        return id != null ? GameRegistry.watchToken(id) : null;
+    }
+
+    private static String gameId(HttpExchange ex, String path, String query) {
+        if (query != null) {
+            for (String p : query.split("&")) {
+                if (p.startsWith("gameId=")) return queryValue(p.substring(7));
+            }
+        }
+        for (String header : ex.getRequestHeaders().getOrDefault("Cookie", Collections.emptyList())) {
+            for (String c : header.split(";")) {
+                String kv = c.trim();
+                if (kv.startsWith("gameId=")) return kv.substring(7);
+            }
+        }
+        if (path.startsWith(GAMES_PREFIX)) {
+            int end = path.indexOf('/', GAMES_PREFIX.length());
+            if (end > GAMES_PREFIX.length()) return path.substring(GAMES_PREFIX.length(), end);
+        }
+        return null;
+    }
+
+    private static String queryValue(String raw) {
+        try {
+            return URLDecoder.decode(raw, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return raw; // bad encoding, the node answers it
+        }
+    }
+
+    private String any(HashRing r) {
+        List<String> nodes = r.nodes();
+        return nodes.isEmpty() ? null : nodes.get(Math.floorMod(next.getAndIncrement(), nodes.size()));
+    }
+
+    // -----------------------
+    // Membership
+    // -----------------------
+
+    /** POST /cluster/join?node=host:port and /cluster/leave?node=host:port, called by the nodes. */
+    private void membership(HttpExchange ex, boolean join) throws IOException {
+        if (!ClusterNode.authorized(ex, secret)) {
+            sendText(ex, 403, "Forbidden");
+            return;
+        }
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            sendText(ex, 405, "Method Not Allowed");
+            return;
+        }
+        String query = ex.getRequestURI().getRawQuery();
+        String node = query != null && query.startsWith("node=")
+                ? URLDecoder.decode(query.substring(5), StandardCharsets.UTF_8) : null;
+        if (node == null || !node.matches("[\\w.\\-\\[\\]:]+:\\d+")) {
+            sendText(ex, 400, "Use ?node=host:port");
+            return;
+        }
+        int sent = change(node, join);
+        sendJson(ex, new JSONObject().put("nodes", new JSONArray(ring.nodes())).put("gamesMoved", sent));
+    }
+
+    /**
+     * Add or remove node. Client requests wait meanwhile, while every node of the old and the
+     * new ring hands the games it no longer owns to their owners. Returns the games moved.
+     */
+    private synchronized int change(String node, boolean join) {
+        HashRing current = ring;
+        HashRing target = join ? current.with(node) : current.without(node);
+        if (target == current) return 0;
+        long start = System.nanoTime();
+        Lock lock = pause.writeLock();
+        lock.lock();
+        try {
+            String body = new JSONObject().put("nodes", new JSONArray(target.nodes())).put("vnodes", target.vnodes()).toString();
+            Set<String> involved = new LinkedHashSet<>(current.nodes());
+            involved.addAll(target.nodes());
+            List<CompletableFuture<Integer>> calls = new ArrayList<>();
+            for (String n : involved) {
+                HttpRequest req = HttpRequest.newBuilder(URI.create("http://" + n + "/cluster/rebalance"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json; charset=utf-8")
+                        .header(ClusterNode.SECRET_HEADER, secret)
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                calls.add(http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                        .thenApply(r -> r.statusCode() == 200 ? new JSONObject(r.body()).optInt("sent") : 0)
+                        .exceptionally(e -> {
+                            System.err.println("Rebalance on " + n + " failed: " + e.getMessage());
+                            return 0;
+                        }));
+            }
+            int sent = 0;
+            for (CompletableFuture<Integer> c : calls) sent += c.join();
+            ring = target;
+            System.out.println((join ? "Node joined: " : "Node left: ") + node
+                    + ", " + sent + " games moved, ring " + target.nodes());
+            return sent;
+        } finally {
+            lock.unlock();
+            REBALANCE.observeSince(start);
+        }
+    }
+
+    private void suspect(String node) {
+        if (suspects.putIfAbsent(node, new AtomicInteger()) == null) {
+            System.err.println("Node not answering: " + node + ", checking it");
+        }
+    }
+
+    // health thread: probe every suspect node, forgive the ones that answer, drop the ones that keep failing
+    private void checkSuspects() {
+        for (Map.Entry<String, AtomicInteger> e : suspects.entrySet()) {
+            String node = e.getKey();
+            try {
+                if (!ring.contains(node)) {
+                    suspects.remove(node); // left or was dropped meanwhile
+                } else if (alive(node)) {
+                    suspects.remove(node);
+                    System.out.println("Node answering again: " + node);
+                } else if (e.getValue().incrementAndGet() >= DOWN_AFTER) {
+                    suspects.remove(node);
+                    nodeDown(node);
+                }
+            } catch (RuntimeException ex) { // an escaped exception would cancel the schedule
+                System.err.println("Health check of " + node + " failed: " + ex);
+            }
+        }
+    }
+
+    // any HTTP answer counts, the node's metrics page is never shed
+    private boolean alive(String node) {
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://" + node + "/TicTacToe/metrics"))
+                .timeout(Duration.ofSeconds(2))
+                .GET()
+                .build();
+        try {
+            http.send(req, HttpResponse.BodyHandlers.discarding());
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // a node that failed DOWN_AFTER health checks can't hand its games over: just take it off the ring
+    private synchronized void nodeDown(String node) {
+        if (!ring.contains(node)) return;
+        Lock lock = pause.writeLock();
+        lock.lock();
+        try {
+            ring = ring.without(node);
+        } finally {
+            lock.unlock();
+        }
+        FAILOVERS.inc();
+        System.err.println("Node down: " + node + ", ring " + ring.nodes());
+    }
+
+    /** GET /cluster/nodes: the current ring. */
+    private void nodes(HttpExchange ex) throws IOException {
+        HashRing r = ring;
+        sendJson(ex, new JSONObject().put("nodes", new JSONArray(r.nodes())).put("vnodes", r.vnodes()));
+    }
+
+    private static void sendText(HttpExchange ex, int code, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+    }
+
+    private static void sendJson(HttpExchange ex, JSONObject json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+    }
+}
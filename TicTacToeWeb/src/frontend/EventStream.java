@@ -0,0 +1,220 @@
+package frontend;
+
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One open /events stream (the player's own page or a spectator), written by shared writer threads
+ * instead of holding a request thread for as long as the viewer stays.
+ * - A game update is encoded once into an immutable SSE frame (byte[]); the fan-out thread queues
+ *   that same array on every stream of the game, so 10,000 viewers cost one encoding
+ * - offer() never blocks the game: it queues the frame and, if no writer is on this stream yet,
+ *   hands the stream to one; a writer sends everything queued and flushes once
+ * - A viewer MAX_PENDING frames behind has its backlog replaced by one full-board frame, so a slow
+ *   connection skips states instead of growing a queue or holding up the game
+ */
+final class EventStream {
+    static final long KEEPALIVE_SECONDS = 15;
+    private static final int MAX_PENDING = 64;
+    // comment line keeps proxies from closing an idle stream
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final Metrics.Counter FRAMES = Metrics.counter("ttt_sse_frames_total", "Event frames queued to /events streams");
+    private static final Metrics.Counter RESYNCS = Metrics.counter("ttt_sse_resyncs_total",
+            "Backlogs of slow viewers replaced by one full board");
+    private static final Set<EventStream> OPEN = ConcurrentHashMap.newKeySet();
+    static {
+        Metrics.gauge("ttt_sse_streams_open", "Open /events streams", () -> OPEN.size());
+    }
+
+    /*
+     * Writers: a small fixed pool sharing one queue of streams with something to send, so an update
+     * to thousands of streams wakes a few threads, not one per stream (-Dttt.sse.writers).
+     * HttpServer streams only block, so a viewer that stops reading eventually pins the writer on it.
+     * The watchdog ends a stream whose write has been stuck for STALL_NANOS (5 s) by interrupting its
+     * writer, which closes the socket under the write (exchange.close() would block on the same stream);
+     * the pool never grows, a viewer can hold a writer for 5 s at most.
+     */
+    private static final int WRITER_THREADS = Integer.getInteger("ttt.sse.writers",
+            Math.max(4, Runtime.getRuntime().availableProcessors()));
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final AtomicInteger WRITER_IDS = new AtomicInteger();
+    private static final ThreadPoolExecutor WRITERS = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "sse-writer-" + WRITER_IDS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    // the game-to-streams loops (GameRegistry.Game.publish), off the request threads
+    private static final ExecutorService FANOUT = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "sse-fanout-" + WRITER_IDS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Metrics.Counter STALLED = Metrics.counter("ttt_sse_streams_stalled_total",
+            "Streams cut off because the viewer stopped reading");
+    static {
+        WRITERS.allowCoreThreadTimeOut(true);
+        TIMER.scheduleWithFixedDelay(EventStream::keepAlive, KEEPALIVE_SECONDS, KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+        TIMER.scheduleWithFixedDelay(EventStream::watchdog, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private final HttpExchange exchange;
+    private final OutputStream out;
+    private final GameRegistry.Game game;
+    // guarded by this
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+    private boolean writing, closed;
+    private Thread writer;            // writer thread while it is in a write or flush
+    private volatile long lastWrite = System.nanoTime();
+    private volatile long writeStart; // nanoTime when the current write began, 0 when not writing
+    private volatile long since;      // game update the first frame already showed
+
+    /** Take over an exchange whose 200 / text/event-stream headers were already sent. */
+    EventStream(HttpExchange exchange, GameRegistry.Game game) {
+        this.exchange = exchange;
+        this.out = exchange.getResponseBody();
+        this.game = game;
+        OPEN.add(this);
+    }
+
+    void setSince(long seq) { since = seq; }
+
+    /**
+     * Queue game update seq (frame shared, never modified) unless the first frame already had it.
+     * resync is the full-board frame that replaces the backlog when the viewer is too far behind.
+     */
+    void offer(long seq, byte[] frame, byte[] resync) {
+        if (seq <= since) return;
+        offer(frame, resync);
+    }
+
+    /** Queue one frame as is (the first frame of the stream). Never blocks. */
+    void offer(byte[] frame, byte[] resync) {
+        synchronized (this) {
+            if (closed) return;
+            if (pending.size() >= MAX_PENDING) {
+                pending.clear();
+                frame = resync;
+                RESYNCS.inc();
+            }
+            pending.add(frame);
+            FRAMES.inc();
+            if (writing) return;
+            writing = true;
+        }
+        WRITERS.execute(this::drain);
+    }
+
+    // keepalive for a stream with nothing queued (a backlog is going out anyway)
+    private void ping() {
+        synchronized (this) {
+            if (closed || writing) return;
+            pending.add(KEEPALIVE);
+            writing = true;
+        }
+        WRITERS.execute(this::drain);
+    }
+
+    // writer thread; only one per stream at a time (the writing flag)
+    private void drain() {
+        boolean flushed = true;
+        try {
+            while (true) {
+                byte[] f;
+                synchronized (this) {
+                    writer = null;
+                    Thread.interrupted(); // a watchdog interrupt that came as the last write finished
+                    f = closed ? null : pending.poll();
+                    if (f == null && (flushed || closed)) {
+                        writing = false;
+                        if (!closed) return;
+                        break;
+                    }
+                    writer = Thread.currentThread();
+                }
+                writeStart = System.nanoTime() | 1; // never 0 while writing
+                if (f == null) {
+                    out.flush();
+                    flushed = true;
+                    lastWrite = System.nanoTime();
+                } else {
+                    out.write(f);
+                    flushed = false;
+                }
+                writeStart = 0;
+            }
+        } catch (IOException e) {
+            writeStart = 0;
+            synchronized (this) {
+                writer = null;
+                Thread.interrupted();
+                writing = false;
+            }
+            close(); // viewer went away, or the watchdog cut it off
+        }
+        finish(); // closed by now, here or by close() while this writer was busy; a second finish() is harmless
+    }
+
+    /** End the stream (viewer gone, game evicted or moved to another node). */
+    void close() {
+        boolean idle;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pending.clear();
+            idle = !writing; // else the writer finishes when it stops, closing here could block behind its write
+        }
+        game.unwatch(this);
+        if (idle) finish();
+    }
+
+    private void finish() {
+        OPEN.remove(this);
+        exchange.close();
+    }
+
+    // watchdog: interrupt the writer if it is still in the write that began at started
+    private synchronized void abort(long started) {
+        if (writer == null || writeStart != started) return;
+        writer.interrupt();
+        STALLED.inc();
+    }
+
+    static void fanOut(Runnable task) { FANOUT.execute(task); }
+
+    // cut off every stream whose current write has been blocked for STALL_NANOS
+    private static void watchdog() {
+        long now = System.nanoTime();
+        for (EventStream s : OPEN) {
+            long started = s.writeStart;
+            if (started != 0 && now - started > STALL_NANOS) s.abort(started);
+        }
+    }
+
+    private static void keepAlive() {
+        long idle = System.nanoTime() - TimeUnit.SECONDS.toNanos(KEEPALIVE_SECONDS);
+        for (EventStream s : OPEN) {
+            if (s.lastWrite - idle <= 0) s.ping();
+        }
+    }
+}
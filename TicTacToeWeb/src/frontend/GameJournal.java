@@ -0,0 +1,540 @@
+package frontend;
+
+import backend.Difficulty;
+import backend.GameEngine;
+import backend.MoveLog;
+import metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe journal of the web games, so a restart resumes every game in progress.
+ * - Each change of a game is one small record appended to a memory-mapped log segment
+ *   (log-N.bin): new game, one placed symbol, one undo, game handed to another node
+ * - Records carry a CRC and the game's own sequence number; recovery stops at a torn record
+ *   and skips anything a snapshot already contains, so replaying is idempotent
+ * - Group commit: one flusher thread forces the mapped pages to disk while requests wait on
+ *   sync(), so many moves share one fsync (-Dttt.journal.sync=async doesn't wait at all)
+ * - Every snapshotSeconds (and on close) the live games are written to snapshot-N.bin and the
+ *   segments before N are deleted, which keeps the log, and the replay on startup, short
+ * Callers hold the game's lock while logging, like for any other change to the game.
+ */
+public class GameJournal {
+    private static final byte NEW = 1, MOVE = 2, UNDO = 3, DROP = 4;
+    private static final int HEADER = 8;          // record length + CRC
+    private static final int SNAPSHOT_MAGIC = 0x54545453; // "TTTS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final Metrics.Counter APPENDS = Metrics.counter("ttt_journal_records_total", "Records appended to the game journal");
+    private static final Metrics.Histogram FSYNC = Metrics.histogram("ttt_journal_fsync_duration_seconds", "Time to force one group of journal records to disk");
+    private static final Metrics.Histogram SYNC_WAIT = Metrics.histogram("ttt_journal_sync_wait_seconds", "Time a request waits for its journal records to be on disk");
+    private static final Metrics.Histogram SNAPSHOT = Metrics.histogram("ttt_journal_snapshot_duration_seconds", "Time to write one snapshot of the live games");
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean groupCommit;
+
+    // append side, guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private long segmentBase;      // journal position of the segment's first byte
+    private volatile long appended; // journal position after the last record (read by the flusher without the lock)
+    private final ByteBuffer record = ByteBuffer.allocate(1024);
+    private final CRC32C crc = new CRC32C();
+
+    // durability watermark, guarded by syncLock
+    private final Object syncLock = new Object();
+    private long durable;
+    private volatile boolean closed;
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+    private Thread flusher;
+    private ScheduledExecutorService snapshots;
+
+    public GameJournal(Path dir, long segmentBytes, boolean groupCommit) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.groupCommit = groupCommit;
+        Files.createDirectories(dir);
+    }
+
+    // -----------------------
+    // Recovery
+    // -----------------------
+
+    /** Game state rebuilt from the snapshot and the log. */
+    private static final class Saved {
+        int seq;
+        int size = 3, k = 3, level;
+        long seed;
+        String player = "guest";
+        final List<Integer> moves = new ArrayList<>(); // MoveLog packing: pos << 16 | symbol
+    }
+
+    /**
+     * Rebuild the games of the last run into registry, then open a new segment for appends.
+     * Call once, before the server takes requests. Returns the number of games restored.
+     */
+    public synchronized int recover(GameRegistry registry) throws IOException {
+        TreeMap<Integer, Path> logs = new TreeMap<>(), snaps = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                if (name.startsWith("log-") && name.endsWith(".bin")) logs.put(number(name), f);
+                if (name.startsWith("snapshot-") && name.endsWith(".bin")) snaps.put(number(name), f);
+            }
+        }
+
+        Map<Long, Saved> games = new HashMap<>();
+        int first = 0;
+        for (Integer n : snaps.descendingKeySet()) {
+            Map<Long, Saved> loaded = readSnapshot(snaps.get(n));
+            if (loaded != null) {
+                games = loaded;
+                first = n;
+                break;
+            }
+            System.err.println("Ignoring damaged journal snapshot " + snaps.get(n));
+        }
+        int records = 0;
+        for (Map.Entry<Integer, Path> e : logs.tailMap(first, true).entrySet()) records += replay(e.getValue(), games);
+
+        int restored = 0;
+        for (Map.Entry<Long, Saved> e : games.entrySet()) {
+            if (restore(registry, Long.toHexString(e.getKey()), e.getValue())) restored++;
+        }
+
+        int last = Math.max(first, logs.isEmpty() ? 0 : logs.lastKey());
+        openSegment(last + 1); // never append behind a possibly torn tail
+        if (!games.isEmpty() || records > 0) {
+            System.out.println("Journal: restored " + restored + " games (" + records + " log records replayed)");
+        }
+        if (restored < games.size()) {
+            System.err.println("Journal: " + (games.size() - restored) + " games not restored, over the registry cap");
+        }
+        return restored;
+    }
+
+    private static int number(String fileName) {
+        return Integer.parseInt(fileName.substring(fileName.indexOf('-') + 1, fileName.length() - 4));
+    }
+
+    // apply every intact record of one segment; stops at the first zero / torn / corrupt record
+    private static int replay(Path file, Map<Long, Saved> games) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        CRC32C check = new CRC32C();
+        int applied = 0;
+        while (buf.remaining() >= HEADER) {
+            int len = buf.getInt();
+            int sum = buf.getInt();
+            if (len <= 0 || len > buf.remaining()) break; // end of the written part, or torn length
+            ByteBuffer body = buf.slice();
+            body.limit(len);
+            check.reset();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != sum) break;     // torn write
+            buf.position(buf.position() + len);
+            if (apply(body, games)) applied++;
+        }
+        return applied;
+    }
+
+    private static boolean apply(ByteBuffer r, Map<Long, Saved> games) {
+        byte type = r.get();
+        long id = r.getLong();
+        int seq = r.getInt();
+        Saved g = games.get(id);
+        if (g != null && seq <= g.seq) return false; // already in the snapshot
+        if (type == DROP) return games.remove(id) != null;
+        if (type == NEW) {
+            if (g == null) {
+                g = new Saved();
+                games.put(id, g);
+            }
+            g.size = r.get();
+            g.k = r.get();
+            g.level = r.get();
+            g.seed = r.getLong();
+            byte[] name = new byte[r.getShort()];
+            r.get(name);
+            g.player = new String(name, StandardCharsets.UTF_8);
+            g.moves.clear();
+        } else if (g == null) {
+            return false; // game started before the snapshot and was gone by then
+        } else if (type == MOVE) {
+            int pos = r.getShort() & 0xffff;
+            g.moves.add(pos << 16 | (char) r.get());
+        } else if (type == UNDO) {
+            if (!g.moves.isEmpty()) g.moves.remove(g.moves.size() - 1);
+        }
+        g.seq = seq;
+        return true;
+    }
+
+    // false when the registry is full or the saved shape is invalid
+    private static boolean restore(GameRegistry registry, String id, Saved s) {
+        GameRegistry.Game game = registry.restore(id);
+        if (game == null) return false;
+        synchronized (game) {
+            GameEngine engine;
+            try {
+                engine = GameEngine.create(s.size, s.k);
+            } catch (IllegalArgumentException e) {
+                registry.remove(id);
+                return false;
+            }
+            Difficulty[] levels = Difficulty.values();
+            engine.setDifficulty(levels[Math.min(Math.max(s.level, 0), levels.length - 1)]);
+            engine.setSeed(s.seed);
+            for (int m : s.moves) engine.placeSymbol(MoveLog.posOf(m), MoveLog.symbolOf(m));
+            game.setBackend(engine);
+            game.begin(s.player);
+            game.setJournalSeq(s.seq);
+        }
+        return true;
+    }
+
+    // -----------------------
+    // Appending
+    // -----------------------
+
+    /** Log a (re)started game: shape, level, seed and player of game.getBackend(). */
+    public void logNew(GameRegistry.Game game) {
+        GameEngine e = game.getBackend();
+        byte[] name = game.getPlayer().getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            begin(NEW, game);
+            record.put((byte) e.getSize()).put((byte) e.getWinLength()).put((byte) e.getDifficulty().ordinal())
+                    .putLong(e.getSeed()).putShort((short) name.length).put(name);
+            end();
+        }
+    }
+
+    /** Log the moves of the game's MoveLog from index from on (the player's move and the CPU reply). */
+    public void logMoves(GameRegistry.Game game, int from) {
+        MoveLog log = game.getBackend().getMoveLog();
+        synchronized (this) {
+            for (int i = from; i < log.size(); i++) {
+                begin(MOVE, game);
+                record.putShort((short) log.pos(i)).put((byte) log.symbol(i));
+                end();
+            }
+        }
+    }
+
+    /** Log n symbols taken back. */
+    public void logUndo(GameRegistry.Game game, int n) {
+        synchronized (this) {
+            for (int i = 0; i < n; i++) {
+                begin(UNDO, game);
+                end();
+            }
+        }
+    }
+
+    /** Log that the game left this process (cluster handoff, idle eviction), so recovery doesn't bring it back. */
+    public void logDrop(GameRegistry.Game game) {
+        synchronized (this) {
+            begin(DROP, game);
+            end();
+        }
+    }
+
+    private void begin(byte type, GameRegistry.Game game) {
+        record.clear();
+        record.put(type).putLong(Long.parseUnsignedLong(game.getId(), 16)).putInt(game.nextJournalSeq());
+    }
+
+    // frame the record (length, CRC) into the mapped segment, rolling over to a new segment when full
+    private void end() {
+        record.flip();
+        int len = record.remaining();
+        if (segment.remaining() < HEADER + len) {
+            try {
+                openSegment(segmentNumber + 1);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open a new journal segment", e);
+            }
+        }
+        crc.reset();
+        crc.update(record.duplicate());
+        segment.putInt(len).putInt((int) crc.getValue()).put(record);
+        appended = segmentBase + segment.position();
+        APPENDS.inc();
+        if (groupCommit) {
+            synchronized (syncLock) { syncLock.notifyAll(); } // wake the flusher
+        }
+    }
+
+    // caller holds this (or is recover()); the old segment is forced before it's left behind
+    private void openSegment(int number) throws IOException {
+        if (segment != null) {
+            segment.force();
+            channel.close();
+            synchronized (syncLock) {
+                durable = Math.max(durable, appended);
+                syncLock.notifyAll();
+            }
+        }
+        Path file = dir.resolve(String.format("log-%08d.bin", number));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes); // grows the file, zero-filled
+        segmentNumber = number;
+        segmentBase = appended;
+    }
+
+    /** Wait until everything logged so far is on disk (no-op in async mode). */
+    public void sync() {
+        if (!groupCommit || closed) return;
+        long target = appended;
+        long start = System.nanoTime();
+        synchronized (syncLock) {
+            while (durable < target && !closed) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        SYNC_WAIT.observeSince(start);
+    }
+
+    // group commit: force whatever has been appended since the last round, then release its waiters
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (syncLock) {
+                    while (!closed && durable >= appended) syncLock.wait(1000);
+                }
+                flushOnce();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) { // a dead flusher would leave every sync() waiting forever
+                System.err.println("Journal flush failed (will retry): " + t);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushOnce() {
+        MappedByteBuffer seg;
+        long target, base, from;
+        // one critical section, so a segment roll can't slip in between reading the segment and the watermark
+        // (openSegment takes syncLock inside this, same order as here)
+        synchronized (this) {
+            seg = segment;
+            target = appended;
+            base = segmentBase;
+            synchronized (syncLock) { from = Math.max(durable, base); }
+        }
+        if (target <= from) return; // a segment roll forced it already
+        long start = System.nanoTime();
+        seg.force((int) (from - base), (int) (target - from));
+        FSYNC.observeSince(start);
+        synchronized (syncLock) {
+            durable = Math.max(durable, target);
+            syncLock.notifyAll();
+        }
+    }
+
+    // -----------------------
+    // Snapshots
+    // -----------------------
+
+    /** Start the group-commit flusher and the periodic snapshots, and log the registry's evictions. */
+    public void start(GameRegistry registry, long snapshotSeconds) {
+        registry.setJournal(this); // evicted games are dropped here too
+        if (groupCommit) {
+            flusher = new Thread(this::flushLoop, "JournalFlusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JournalSnapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(registry);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Journal snapshot failed (will retry): " + e.getMessage());
+            }
+        }, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Write every live game to snapshot-N.bin, N being a fresh segment started first, then drop older files.
+     * Events logged while the snapshot runs land in segment N or later and carry higher sequence numbers
+     * than what the snapshot saw, so recovery (snapshot N + segments >= N) misses nothing and repeats nothing.
+     */
+    public void snapshot(GameRegistry registry) throws IOException {
+        long start = System.nanoTime();
+        int first;
+        synchronized (this) {
+            openSegment(segmentNumber + 1);
+            first = segmentNumber;
+        }
+        Path tmp = dir.resolve("snapshot.tmp");
+        int count = 0;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOut out = new CheckedOut(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(SNAPSHOT_VERSION);
+            for (GameRegistry.Game game : registry.all()) {
+                synchronized (game) {
+                    GameEngine e = game.getBackend();
+                    MoveLog log = e.getMoveLog();
+                    data.writeBoolean(true);
+                    data.writeLong(Long.parseUnsignedLong(game.getId(), 16));
+                    data.writeInt(game.getJournalSeq());
+                    data.writeByte(e.getSize());
+                    data.writeByte(e.getWinLength());
+                    data.writeByte(e.getDifficulty().ordinal());
+                    data.writeLong(e.getSeed());
+                    data.writeUTF(game.getPlayer());
+                    data.writeInt(log.size());
+                    for (int i = 0; i < log.size(); i++) data.writeInt(log.get(i));
+                }
+                count++;
+            }
+            data.writeBoolean(false);
+            data.flush();
+            data.writeInt((int) out.crc.getValue());
+            data.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(String.format("snapshot-%08d.bin", first)),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.bin")) {
+            for (Path f : files) {
+                if (number(f.getFileName().toString()) < first) Files.deleteIfExists(f);
+            }
+        }
+        SNAPSHOT.observeSince(start);
+        System.out.println("Journal snapshot: " + count + " games");
+    }
+
+    // null when the file is incomplete or damaged
+    private static Map<Long, Saved> readSnapshot(Path file) {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            CheckedIn in = new CheckedIn(raw);
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != SNAPSHOT_MAGIC || data.readInt() != SNAPSHOT_VERSION) return null;
+            Map<Long, Saved> games = new HashMap<>();
+            while (data.readBoolean()) {
+                long id = data.readLong();
+                Saved s = new Saved();
+                s.seq = data.readInt();
+                s.size = data.readByte();
+                s.k = data.readByte();
+                s.level = data.readByte();
+                s.seed = data.readLong();
+                s.player = data.readUTF();
+                int n = data.readInt();
+                for (int i = 0; i < n; i++) s.moves.add(data.readInt());
+                games.put(id, s);
+            }
+            int expected = (int) in.crc.getValue();
+            return new DataInputStream(raw).readInt() == expected ? games : null;
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Force the log, write a final snapshot (fast restart) and stop the background threads. */
+    public void close(GameRegistry registry) {
+        if (!closing.compareAndSet(false, true)) return; // stop() and the server's shutdown hook both call this
+        registry.setJournal(null);
+        if (snapshots != null) snapshots.shutdown();
+        try {
+            snapshot(registry);
+        } catch (IOException e) {
+            System.err.println("Journal final snapshot failed: " + e.getMessage());
+        }
+        synchronized (this) {
+            try {
+                segment.force();
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Journal close failed: " + e.getMessage());
+            }
+        }
+        closed = true;
+        synchronized (syncLock) { syncLock.notifyAll(); }
+    }
+
+    // snapshot streams with a running CRC32C
+    private static final class CheckedOut extends OutputStream {
+        final CRC32C crc = new CRC32C();
+        private final OutputStream out;
+
+        CheckedOut(OutputStream out) { this.out = out; }
+
+        @Override public void write(int b) throws IOException { crc.update(b); out.write(b); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { crc.update(b, off, len); out.write(b, off, len); }
+        @Override public void flush() throws IOException { out.flush(); }
+    }
+
+    private static final class CheckedIn extends InputStream {
+        final CRC32C crc = new CRC32C();
+        private final InputStream in;
+
+        CheckedIn(InputStream in) { this.in = in; }
+
+        @Override public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) crc.update(b);
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) crc.update(b, off, n);
+            return n;
+        }
+    }
+}
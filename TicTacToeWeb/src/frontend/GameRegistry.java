@@ -0,0 +1,275 @@
+package frontend;
+
+import backend.BitBoardEngine;
+import backend.GameEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one game (backend + bookkeeping) per browser session.
+ * - Games are keyed by an id handed out by /TicTacToe/newgame (cookie or ?gameId=...); the id is
+ *   the player's key to the game, spectators get its watch token instead (see watchToken)
+ * - Idle games are evicted by a background reaper (and logged as dropped in the journal, if any)
+ * - The number of live games is capped; create() and restore() return null when full
+ */
+public class GameRegistry {
+
+    /** One independent game. Callers synchronize on it while touching the backend. */
+    public static class Game {
+        private final String id;
+        private final String watchToken;
+        private GameEngine backend = new BitBoardEngine();
+        private volatile long lastAccess = System.currentTimeMillis();
+        // history bookkeeping, guarded by the game's lock like the backend
+        private String player = "guest";
+        private long startedAt = System.currentTimeMillis();
+        private boolean recorded;
+        private int journalSeq; // changes logged to the GameJournal so far
+        // open /events streams (the player's own page and spectators)
+        private final Set<EventStream> watchers = ConcurrentHashMap.newKeySet();
+        private long published; // updates so far, under the game's lock
+        // updates (seq, event, resync) waiting for the fan-out, guarded by itself
+        private final ArrayDeque<Object[]> outbox = new ArrayDeque<>();
+        private boolean fanningOut;
+
+        Game(String id) {
+            this.id = id;
+            this.watchToken = GameRegistry.watchToken(id);
+        }
+
+        public String getId() { return id; }
+        public String getWatchToken() { return watchToken; }
+        public GameEngine getBackend() { return backend; }
+        // swap engines (e.g. another board size); caller holds the game's lock
+        public void setBackend(GameEngine backend) { this.backend = backend; }
+        void touch() { lastAccess = System.currentTimeMillis(); }
+
+        public String getPlayer() { return player; }
+        public long getStartedAt() { return startedAt; }
+
+        /** A new game starts on this session; player null keeps the previous name. */
+        public void begin(String player) {
+            if (player != null) this.player = player;
+            startedAt = System.currentTimeMillis();
+            recorded = false;
+        }
+
+        // carried over when a game moves between cluster nodes
+        void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+
+        // GameJournal bookkeeping, under the game's lock
+        int getJournalSeq() { return journalSeq; }
+        int nextJournalSeq() { return ++journalSeq; }
+        void setJournalSeq(int seq) { journalSeq = seq; }
+
+        /** True the first time it's called for the current game, so each result is recorded once. */
+        public boolean markRecorded() {
+            if (recorded) return false;
+            recorded = true;
+            return true;
+        }
+
+        /** An undo took the board out of game over: the result it reaches next is recorded again. */
+        public void unmarkRecorded() { recorded = false; }
+
+        /**
+         * Add a stream whose first frame shows the current state. Caller holds the game's lock;
+         * the stream then skips the updates still in the outbox, which its first frame already has.
+         */
+        void watch(EventStream s) {
+            s.setSince(published);
+            watchers.add(s);
+        }
+
+        void unwatch(EventStream s) { watchers.remove(s); }
+
+        public boolean isWatched() { return !watchers.isEmpty(); }
+
+        /**
+         * Send one encoded SSE event to every watcher; the same array goes to all of them.
+         * resync is the full-state event, used for a watcher too far behind (see EventStream).
+         * Caller holds the game's lock. The fan-out runs on EventStream's fan-out thread, so a game
+         * with thousands of watchers doesn't make its own player wait; if updates pile up meanwhile,
+         * the fan-out sends the newest full state once instead of each of them.
+         */
+        public void publish(byte[] event, byte[] resync) {
+            long seq = ++published;
+            synchronized (outbox) {
+                outbox.add(new Object[]{seq, event, resync});
+                if (fanningOut) return;
+                fanningOut = true;
+            }
+            EventStream.fanOut(this::fanOut);
+        }
+
+        private void fanOut() {
+            while (true) {
+                long seq;
+                byte[] event, resync;
+                synchronized (outbox) {
+                    Object[] last = outbox.peekLast();
+                    if (last == null) {
+                        fanningOut = false;
+                        return;
+                    }
+                    seq = (Long) last[0];
+                    resync = (byte[]) last[2];
+                    event = outbox.size() == 1 ? (byte[]) last[1] : resync;
+                    outbox.clear();
+                }
+                for (EventStream s : watchers) s.offer(seq, event, resync);
+            }
+        }
+
+        // the game left this process (evicted, replaced, handed to another node): end its streams
+        void closeWatchers() {
+            for (EventStream s : watchers) s.close();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Game> byWatchToken = new ConcurrentHashMap<>();
+    private final SecureRandom ids = new SecureRandom();
+    private final int maxGames;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService reaper;
+    private volatile GameJournal journal; // where evictions are logged, null = no journal
+
+    public GameRegistry(int maxGames, long idleTimeoutMillis) {
+        this.maxGames = maxGames;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "GameReaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 4);
+        reaper.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Create a new game with a fresh id, or null if the cap is reached. */
+    public Game create() {
+        if (games.size() >= maxGames) {
+            evictIdle();
+            if (games.size() >= maxGames) return null;
+        }
+        while (true) {
+            String id = Long.toHexString(ids.nextLong());
+            Game g = new Game(id);
+            if (games.putIfAbsent(id, g) == null) {
+                byWatchToken.put(g.watchToken, g);
+                return g;
+            }
+        }
+    }
+
+    /**
+     * Create a game under an id the cluster router picked (the id decides which node owns it),
+     * or return the live game already using it; null if the cap is reached.
+     */
+    public Game create(String id) {
+        Game g = get(id);
+        if (g != null) return g;
+        if (games.size() >= maxGames) {
+            evictIdle();
+            if (games.size() >= maxGames) return null;
+        }
+        g = new Game(id);
+        Game raced = games.putIfAbsent(id, g);
+        if (raced != null) return raced;
+        byWatchToken.put(g.watchToken, g);
+        return g;
+    }
+
+    /**
+     * Put back a game under its old id (journal recovery, cluster handoff), replacing a live game of
+     * that id; null if the id is new here and the cap is reached.
+     */
+    Game restore(String id) {
+        if (!games.containsKey(id) && games.size() >= maxGames) {
+            evictIdle();
+            if (games.size() >= maxGames) return null;
+        }
+        Game g = new Game(id);
+        Game old = games.put(id, g);
+        byWatchToken.put(g.watchToken, g);
+        if (old != null) old.closeWatchers();
+        return g;
+    }
+
+    /** Log evictions to this journal from now on (null: stop logging them). */
+    void setJournal(GameJournal journal) { this.journal = journal; }
+
+    /** Live games, for journal snapshots; weakly consistent like any ConcurrentHashMap view. */
+    Collection<Game> all() { return games.values(); }
+
+    /** Look up a live game and mark it as used, or null if unknown / evicted. */
+    public Game get(String id) {
+        if (id == null) return null;
+        Game g = games.get(id);
+        if (g != null) g.touch();
+        return g;
+    }
+
+    /** The game a spectator's ?watch= token stands for, or null. Watching doesn't keep a game alive. */
+    public Game getByWatchToken(String token) {
+        return token == null ? null : byWatchToken.get(token);
+    }
+
+    public void remove(String id) {
+        Game g = id != null ? games.remove(id) : null;
+        if (g != null) {
+            byWatchToken.remove(g.watchToken, g);
+            g.closeWatchers();
+        }
+    }
+
+    public boolean contains(String id) { return id != null && games.containsKey(id); }
+
+    /** True while this very game object is the registered one for its id (doesn't count as use). */
+    public boolean isLive(Game g) { return games.get(g.getId()) == g; }
+
+    public int size() { return games.size(); }
+
+    /**
+     * Read-only name of game id for spectators: the first 64 bits of SHA-256 over the id, in hex.
+     * Whoever has the id can work it out, nobody can get the id back from it, so a watch link
+     * can't be used to play or undo moves. It is also the game's key on the cluster ring (see
+     * ClusterRouter), so watch links and player requests of one game reach the same node.
+     */
+    public static String watchToken(String id) {
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(("watch:" + id).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) sb.append(Character.forDigit(h[i] >> 4 & 0xF, 16)).append(Character.forDigit(h[i] & 0xF, 16));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JDK ships SHA-256
+        }
+    }
+
+    // drop games nobody touched for idleTimeoutMillis, for good: journal recovery mustn't bring them back
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        GameJournal j = journal;
+        games.values().removeIf(g -> {
+            if (g.lastAccess >= cutoff) return false;
+            if (j != null) {
+                synchronized (g) { j.logDrop(g); }
+            }
+            byWatchToken.remove(g.watchToken, g);
+            g.closeWatchers();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package frontend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring that maps a game to the cluster node owning it, keyed by the game's watch
+ * token (GameRegistry.watchToken) so both player and spectator requests can be placed.
+ * - Each node ("host:port") is placed at vnodes points, so games spread evenly and a node
+ *   joining or leaving only moves about 1/n of the games
+ * - Immutable: membership changes build a new ring (with / without), readers never lock
+ * - The hash is fixed (FNV-1a + a 64-bit finalizer), so the router and every node compute the
+ *   same owner from the same member list
+ */
+public final class HashRing {
+    private final List<String> nodes;  // sorted, no duplicates
+    private final int vnodes;
+    private final long[] points;       // sorted ring positions
+    private final String[] owners;     // owners[i] sits at points[i]
+
+    public HashRing(Collection<String> nodes, int vnodes) {
+        if (vnodes < 1) throw new IllegalArgumentException("vnodes must be >= 1");
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+        this.vnodes = vnodes;
+        int n = this.nodes.size() * vnodes;
+        long[] hashes = new long[n]; // point of (node i, vnode v) at i * vnodes + v
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(this.nodes.get(i / vnodes) + "#" + (i % vnodes));
+            order[i] = i;
+        }
+        // ties (practically never) go to the smaller node name, so every process agrees
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b]) : Integer.compare(a, b));
+        long[] pts = new long[n];
+        String[] own = new String[n];
+        for (int i = 0; i < n; i++) {
+            pts[i] = hashes[order[i]];
+            own[i] = this.nodes.get(order[i] / vnodes);
+        }
+        this.points = pts;
+        this.owners = own;
+    }
+
+    /** Node owning key: the first point clockwise from the key's hash; null on an empty ring. */
+    public String owner(String key) {
+        if (points.length == 0) return null;
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<String> nodes() { return nodes; }
+
+    public int vnodes() { return vnodes; }
+
+    public boolean contains(String node) { return Collections.binarySearch(nodes, node) >= 0; }
+
+    public boolean isEmpty() { return nodes.isEmpty(); }
+
+    public HashRing with(String node) {
+        if (contains(node)) return this;
+        List<String> more = new ArrayList<>(nodes);
+        more.add(node);
+        return new HashRing(more, vnodes);
+    }
+
+    public HashRing without(String node) {
+        if (!contains(node)) return this;
+        List<String> fewer = new ArrayList<>(nodes);
+        fewer.remove(node);
+        return new HashRing(fewer, vnodes);
+    }
+
+    // FNV-1a over the UTF-8 bytes, then murmur3's fmix64 so similar ids land far apart
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe62dad53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,20 +1,44 @@
 package frontend;
 
 
-import backend.TicTacToeBackend;
+import backend.BitBoardEngine;
+import backend.CpuPlayer;
+import backend.Difficulty;
+import backend.GameEngine;
+import backend.MoveLog;
 import DB.DatabaseHandler;
+import DB.GameRecord;
+import DB.GameRecorder;
+import DB.LeaderboardService;
+import DB.OpeningStats;
+import DB.PlayerScore;
+import DB.PlayerRating;
+import DB.PlayerStats;
+import DB.RatingService;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
+import metrics.Metrics;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.awt.Desktop;
 import java.net.URI;
 
@@ -26,76 +50,236 @@ import java.net.URI;
  */
 public class HttpServerApp {
 
-    // single backend instance for this server process
-    private static final TicTacToeBackend backend = new TicTacToeBackend();
+    // one game per browser session (cookie "gameId" or ?gameId=...)
+    // -Dttt.maxGames caps live games, -Dttt.gameIdleSeconds evicts abandoned ones
+    private static final GameRegistry games = new GameRegistry(
+            Integer.getInteger("ttt.maxGames", 10_000),
+            Long.getLong("ttt.gameIdleSeconds", 30 * 60L) * 1000);
+    private static final String GAME_COOKIE = "gameId";
+    private static final byte[] BOARD_EVENT_HEAD = "event: board\ndata: ".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_PAGE = 500; // leaderboard rows per request
+    // CPU reply time per level, see /TicTacToe/metrics
+    private static final Metrics.Histogram[] CPU_MOVE = new Metrics.Histogram[Difficulty.values().length];
+    static {
+        for (Difficulty d : Difficulty.values()) {
+            CPU_MOVE[d.ordinal()] = Metrics.histogram("ttt_cpu_move_duration_seconds",
+                    "Time the server spends computing one CPU move", "level", d.name().toLowerCase());
+        }
+        Metrics.gauge("ttt_games_active", "Live games in the registry", () -> games.size());
+    }
     // Database handler (may be null if DB init fails)
     private static DatabaseHandler db;
+    // in-memory leaderboard with write-behind to db (null whenever db is null)
+    private static LeaderboardService leaderboard;
+    // finished games, written to the games table off the request path (null whenever db is null)
+    private static GameRecorder recorder;
+    // Elo of named players vs the CPU levels, ranked in memory (null whenever db is null)
+    private static RatingService ratings;
+    // crash-safe log of every game change, replayed on startup (null = games only live in memory)
+    private static GameJournal journal;
+    // membership in a cluster behind a ClusterRouter (-Dttt.cluster.router=host:port; null = standalone)
+    private static ClusterNode cluster;
+    private static final int MAX_NAME = 64;
 
-    // port the server will listen on
+    // port the server will listen on (-Dttt.http.port overrides it)
     public static final int PORT = 8000;
 
+    /*
+     * Request execution, see newExecutor():
+     *   -Dttt.http.executor=pool    bounded pool (default): ttt.http.threads workers, ttt.http.queue waiting
+     *                               requests; beyond that requests get 503 + Retry-After
+     *   -Dttt.http.executor=virtual one virtual thread per request (JDK 21+, else the bounded pool)
+     * Open /events streams don't hold a worker: after the headers they are written by EventStream.
+     * -Dttt.http.backlog is the accept queue of the listening socket.
+     */
+    private static final String EXECUTOR = System.getProperty("ttt.http.executor", "pool");
+    private static final int THREADS = Integer.getInteger("ttt.http.threads", 200);
+    private static final int QUEUE = Integer.getInteger("ttt.http.queue", 1000);
+    private static final int BACKLOG = Integer.getInteger("ttt.http.backlog", 1024);
+    private static final String RETRY_AFTER_SECONDS = String.valueOf(Integer.getInteger("ttt.http.retryAfter", 1));
+    // set while a request the pool had no room for runs on the dispatcher, see OverloadFilter
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+    private static final Metrics.Counter REJECTED =
+            Metrics.counter("ttt_http_rejected_total", "Requests answered 503 because every worker and queue slot was taken");
+
+    // folder with index.html / icon.ico (and the DB by default): -Dttt.assets=/srv/tictactoe,
+    // else the Windows install folder when it exists, else the working directory
+    private static final String ASSETS_DIR = System.getProperty("ttt.assets",
+            new File("C:/Games/TicTacToeWeb").isDirectory() ? "C:/Games/TicTacToeWeb" : ".");
+
     public static void main(String[] args) throws Exception {
-        // initialize database (file path is absolute to your Windows folder)
+        int port = Integer.getInteger("ttt.http.port", PORT);
+        start(port, System.getProperty("ttt.db", ASSETS_DIR + "/tictactoe.db"));
+        System.out.println("HTTP server started. Open: http://localhost:" + port + "/TicTacToe");
+    }
+
+    /**
+     * Open the DB, register the handlers and start listening. Port 0 picks a free port
+     * (see server.getAddress()); used by main and by the in-process load test.
+     */
+    public static HttpServer start(int port, String dbPath) throws IOException {
         try {
-            db = new DatabaseHandler("C:/Games/TicTacToeWeb/tictactoe.db");
-            System.out.println("DB opened: C:/Games/TicTacToeWeb/tictactoe.db");
+            db = new DatabaseHandler(dbPath);
+            System.out.println("DB opened: " + dbPath);
+            leaderboard = new LeaderboardService(db,
+                    Integer.getInteger("ttt.leaderboard.top", 100),
+                    Long.getLong("ttt.leaderboard.flushMillis", 1000));
+            recorder = new GameRecorder(db,
+                    Integer.getInteger("ttt.games.queue", 10_000),
+                    Integer.getInteger("ttt.games.batch", 500));
+            ratings = new RatingService(db, Long.getLong("ttt.ratings.flushMillis", 1000));
         } catch (SQLException e) {
             db = null;
+            leaderboard = null;
+            recorder = null;
+            ratings = null;
             System.err.println("DB init failed: " + e.getMessage());
         }
 
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        // solve the perfect-play table up front so no player pays for it on a move
+        CpuPlayer.warmUp();
 
-        System.out.println("HTTP server started. Open: http://localhost:" + PORT + "/TicTacToe");
+        // bring back the games that were running when the last process stopped or crashed
+        // (the journal folder sits next to the DB file unless -Dttt.journal says otherwise)
+        String journalDir = System.getProperty("ttt.journal", dbPath.isEmpty() ? ASSETS_DIR + "/journal"
+                : Paths.get(dbPath).toAbsolutePath().resolveSibling("journal").toString());
+        if (!journalDir.isEmpty()) {
+            try {
+                journal = new GameJournal(Paths.get(journalDir),
+                        Long.getLong("ttt.journal.segmentMB", 64) << 20,
+                        !"async".equalsIgnoreCase(System.getProperty("ttt.journal.sync", "group")));
+                journal.recover(games);
+                journal.start(games, Long.getLong("ttt.journal.snapshotSeconds", 60));
+            } catch (IOException e) {
+                journal = null;
+                System.err.println("Game journal off: " + e.getMessage());
+            }
+        }
+        String router = System.getProperty("ttt.cluster.router", "");
+        if (!router.isEmpty()) {
+            cluster = new ClusterNode(System.getProperty("ttt.cluster.self", "localhost:" + port), router,
+                    ClusterNode.secret(), games, journal);
+        }
+        if (journal != null || cluster != null) {
+            // on SIGTERM too: hand the games to the other nodes first, then snapshot what is left
+            Runtime.getRuntime().addShutdownHook(new Thread(HttpServerApp::closeGames, "GameShutdown"));
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
 
-        // Serve the main page (index.html)
-        server.createContext("/TicTacToe", new RootHandler());
+        // Serve the main page (index.html) and the favicon from memory, see StaticAssets
+        StaticAssets assets = new StaticAssets(Paths.get(ASSETS_DIR));
+        context(server, "/TicTacToe", assets.handler("index.html", "text/html; charset=utf-8",
+                "no-cache", "UI not found. Put index.html in " + assets.getDir().toAbsolutePath()));
 
-        // API endpoints under /TicTacToe/*
-        server.createContext("/TicTacToe/newgame", new NewGameHandler());
-        server.createContext("/TicTacToe/move", new MoveHandler());
-        server.createContext("/TicTacToe/board", new BoardHandler());
-        server.createContext("/TicTacToe/leaderboard", new LeaderboardHandler());
-        server.createContext("/TicTacToe/saveWin", new SaveWinHandler());// optional: save a player's win
-        server.createContext("/TicTacToe/icon.ico", new IconHandler());
+        // API endpoints under /TicTacToe/* (each one counted and timed, see /TicTacToe/metrics)
+        context(server, "/TicTacToe/newgame", new TimedHandler("newgame", new NewGameHandler()));
+        context(server, "/TicTacToe/move", new TimedHandler("move", new MoveHandler()));
+        context(server, "/TicTacToe/board", new TimedHandler("board", new BoardHandler()));
+        context(server, "/TicTacToe/events", new TimedHandler("events", new EventsHandler())); // SSE push for players + spectators
+        context(server, "/TicTacToe/leaderboard", new TimedHandler("leaderboard", new LeaderboardHandler()));
+        context(server, "/TicTacToe/saveWin", new TimedHandler("saveWin", new SaveWinHandler()));// optional: save a player's win
+        context(server, "/TicTacToe/games/", new TimedHandler("games", new GamesHandler())); // batch moves, replay, undo
+        context(server, "/TicTacToe/stats", new TimedHandler("stats", new StatsHandler())); // win rates, openings
+        context(server, "/TicTacToe/ratings", new TimedHandler("ratings", new RatingsHandler())); // Elo ranking
+        context(server, "/TicTacToe/icon.ico", assets.handler("icon.ico", "image/x-icon",
+                "public, max-age=86400", "No icon"));
+        // not shed: scrapes should still get through while the server is overloaded
+        server.createContext("/TicTacToe/metrics", new MetricsHandler());
+        // node-to-node game handoff, outside /TicTacToe so the router never proxies it; never shed either
+        // (ClusterHandler runs it on its own threads)
+        if (cluster != null) server.createContext("/cluster/", new ClusterHandler());
 
-        // use a cached thread pool for handlers (concurrent clients supported)
-        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.setExecutor(newExecutor());
         server.start();
+        if (cluster != null) cluster.join(); // the router may now send us games
+        return server;
     }
 
-    // -----------------------
-    // Handlers
-    // -----------------------
-
-    /** Serves the static HTML file (web UI) */
-    static class RootHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            // Only GET allowed for the UI
-            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
-                sendText(exchange, 405, "Method Not Allowed");
-                return;
-            }
-
-            File f = new File("C:/Games/TicTacToeWeb/index.html");
-            if (!f.exists()) {
-                sendText(exchange, 404, "UI not found. Put index.html in C:/Games/TicTacToeWeb/");
-                return;
-            }
-
+    // register a handler behind the overload filter
+    private static void context(HttpServer server, String path, HttpHandler handler) {
+        HttpContext ctx = server.createContext(path, handler);
+        ctx.getFilters().add(new OverloadFilter());
+    }
 
-            byte[] bytes = java.nio.file.Files.readAllBytes(f.toPath());
-            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
-            exchange.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+    // virtual thread per request, or a bounded pool that sheds load once its queue is full
+    private static ExecutorService newExecutor() {
+        if ("virtual".equalsIgnoreCase(EXECUTOR)) {
+            try {
+                System.out.println("HTTP executor: virtual thread per request");
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads not available on this JDK, using the bounded pool");
             }
+        }
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE),
+                r -> new Thread(r, "http-" + n.incrementAndGet()),
+                (r, p) -> {
+                    // No room: run the exchange right here on the dispatcher, flagged so OverloadFilter
+                    // answers 503 without doing the real work (throwing would drop the connection).
+                    if (p.isShutdown()) return;
+                    SHEDDING.set(Boolean.TRUE);
+                    try {
+                        r.run();
+                    } finally {
+                        SHEDDING.remove();
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        Metrics.gauge("ttt_http_executor_queue_depth", "Requests waiting for a handler thread", () -> pool.getQueue().size());
+        Metrics.gauge("ttt_http_executor_active_threads", "Handler threads busy with a request", pool::getActiveCount);
+        Metrics.gauge("ttt_http_executor_pool_size", "Handler threads alive", pool::getPoolSize);
+        System.out.println("HTTP executor: " + THREADS + " threads, " + QUEUE + " queued requests, backlog " + BACKLOG);
+        return pool;
+    }
 
+    /**
+     * Hand the games to the other cluster nodes, stop accepting requests, snapshot the remaining
+     * games into the journal and flush pending game records / leaderboard / rating writes before closing the DB.
+     */
+    public static void stop(HttpServer server) {
+        if (cluster != null) cluster.leave(); // needs this server up: the router calls back /cluster/rebalance
+        server.stop(0);
+        if (server.getExecutor() instanceof ExecutorService) {
+            ((ExecutorService) server.getExecutor()).shutdown();
         }
+        closeGames();
+        journal = null;
+        cluster = null;
+        if (recorder != null) recorder.close();
+        if (leaderboard != null) leaderboard.close();
+        if (ratings != null) ratings.close();
+        try {
+            if (db != null) db.close();
+        } catch (SQLException e) {
+            System.err.println("DB close failed: " + e.getMessage());
+        }
+        leaderboard = null;
+        recorder = null;
+        ratings = null;
+        db = null;
+    }
+
+    // games leave in this order: to the other nodes (cluster), else into the journal's final snapshot
+    private static void closeGames() {
+        ClusterNode c = cluster;
+        if (c != null) c.leave();
+        GameJournal j = journal;
+        if (j != null) j.close(games);
     }
 
-    /** Reset / start a new game: GET /TicTacToe/newgame?mode=offline|online */
+    // -----------------------
+    // Handlers
+    // -----------------------
+
+    /**
+     * Reset / start a new game:
+     * GET /TicTacToe/newgame?mode=offline|online[&level=random|greedy|perfect][&size=15&k=5][&gameId=...]
+     *     [&seed=...][&player=alice]
+     * player names the session in the game history (kept for later games, "guest" until set).
+     */
     static class NewGameHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -103,19 +287,96 @@ public class HttpServerApp {
             String query = exchange.getRequestURI().getQuery();
             boolean onlineMode = query != null && query.contains("mode=online");
 
-            backend.reset();
+            // reuse the caller's game if it is still alive, otherwise open a new one
+            Map<String, String> params = queryToMap(query);
+            GameRegistry.Game game = findGame(exchange, params);
+
+            // keep the previous board shape unless the client asks for another one (a new game is 3x3);
+            // checked before any game is created or changed, so a bad request leaves nothing behind
+            int size, k;
+            try {
+                int curSize = 3, curK = 3;
+                if (game != null) {
+                    synchronized (game) {
+                        curSize = game.getBackend().getSize();
+                        curK = game.getBackend().getWinLength();
+                    }
+                }
+                size = Integer.parseInt(params.getOrDefault("size", String.valueOf(curSize)));
+                k = Integer.parseInt(params.getOrDefault("k", String.valueOf(Math.min(size, curK))));
+            } catch (NumberFormatException e) {
+                size = k = -1;
+            }
+            if (!GameEngine.isValidShape(size, k)) {
+                sendText(exchange, 400, "Invalid size/k");
+                return;
+            }
+            // ?seed=... replays the CPU choices of a logged game
+            Long requestedSeed = null;
+            if (params.containsKey("seed")) {
+                try {
+                    requestedSeed = Long.parseLong(params.get("seed"));
+                } catch (NumberFormatException e) {
+                    sendText(exchange, 400, "Invalid seed");
+                    return;
+                }
+            }
+
+            if (game == null) {
+                // behind the router the id was chosen for this node (see ClusterRouter); keep it
+                String id = cluster != null ? gameId(exchange, params) : null;
+                game = id != null && isGameId(id) ? games.create(id) : games.create();
+            }
+            if (game == null) {
+                sendText(exchange, 503, "Too many active games, try again later");
+                return;
+            }
+
+            int len;
+            long seed;
+            synchronized (game) {
+                GameEngine backend = game.getBackend();
+                // same level on the new board
+                if (size != backend.getSize() || k != backend.getWinLength()) {
+                    GameEngine resized = GameEngine.create(size, k);
+                    resized.setDifficulty(backend.getDifficulty());
+                    game.setBackend(resized);
+                    backend = resized;
+                }
+                backend.reset();
+                if (requestedSeed != null) backend.setSeed(requestedSeed);
+                backend.setDifficulty(Difficulty.parse(params.get("level"), backend.getDifficulty()));
+                game.begin(playerName(params.get("player")));
+                if (journal != null) journal.logNew(game);
+                seed = backend.getSeed();
+                len = BoardJson.write(backend);
+                if (game.isWatched()) {
+                    byte[] full = boardEvent(len);
+                    game.publish(full, full);
+                }
+            }
+            journalSync();
             // The server doesn't need to keep a separate mode flag for now; client can use online/offline UI.
-            sendJson(exchange, buildBoardJson());
+            exchange.getResponseHeaders().add("Set-Cookie", GAME_COOKIE + "=" + game.getId() + "; Path=/TicTacToe; HttpOnly");
+            exchange.getResponseHeaders().set("X-Game-Id", game.getId());
+            exchange.getResponseHeaders().set("X-Watch-Token", game.getWatchToken());
+            exchange.getResponseHeaders().set("X-Game-Seed", String.valueOf(seed));
+            sendBoardJson(exchange, len);
         }
     }
 
-    /** Make a move: GET /TicTacToe/move?pos=4  (pos = 0..8) */
+    /** Make a move: GET /TicTacToe/move?pos=4  (pos = 0..size*size-1, row by row) */
     static class MoveHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             // accept GET or POST queries
             String query = exchange.getRequestURI().getQuery();
             Map<String, String> params = queryToMap(query);
+            GameRegistry.Game game = findGame(exchange, params);
+            if (game == null) {
+                sendText(exchange, 404, "No active game, call /TicTacToe/newgame first");
+                return;
+            }
             String posS = params.get("pos");
             if (posS == null) {
                 sendText(exchange, 400, "Missing pos parameter");
@@ -131,35 +392,292 @@ public class HttpServerApp {
             }
 
             // Player is always X in this design
-            boolean ok = backend.playerMove(pos);
-            if (ok && !backend.isGameOver()) {
-                backend.computerMove(); // server runs CPU O move
+            int len;
+            synchronized (game) {
+                GameEngine backend = game.getBackend();
+                char[] before = game.isWatched() ? backend.getBoard().clone() : null;
+                boolean ok = playTurn(game, pos);
+                len = BoardJson.write(backend);
+                if (ok && before != null) {
+                    game.publish(sseEvent("delta", buildDeltaJson(before, backend).toString()), boardEvent(len));
+                }
             }
 
-            sendJson(exchange, buildBoardJson());
+            journalSync();
+            sendBoardJson(exchange, len);
         }
     }
 
-    /** Return current board as JSON: GET /TicTacToe/board */
+    /**
+     * Per-game API for bots, tests and tournaments ({id} = the gameId from /newgame):
+     * - POST /TicTacToe/games/{id}/moves  body [4, 0, 8] or {"moves": [4, 0, 8]}: plays the moves in order,
+     *   each followed by the CPU reply, and answers every resulting state in one response. A batch stops
+     *   once it has used MAX_BATCH_MILLIS (a perfect CPU on a big board takes up to ttt.cpuMillis per reply);
+     *   "remaining" says how many moves were not looked at, the client sends those again
+     * - GET  /TicTacToe/games/{id}/moves  the game's move log, for replays
+     * - POST /TicTacToe/games/{id}/undo   takes back the player's last move and the CPU reply to it
+     */
+    static class GamesHandler implements HttpHandler {
+        private static final String PREFIX = "/TicTacToe/games/";
+        private static final int MAX_BATCH = 1000;   // moves per request
+        // time one batch may hold the game's lock and a server thread
+        private static final long MAX_BATCH_MILLIS = Long.getLong("ttt.batch.millis", 1000);
+        private static final int MAX_BODY = 64 * 1024;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String[] parts = exchange.getRequestURI().getPath().substring(PREFIX.length()).split("/");
+            if (parts.length != 2 || !(parts[1].equals("moves") || parts[1].equals("undo"))) {
+                sendText(exchange, 404, "Use /TicTacToe/games/{id}/moves or /TicTacToe/games/{id}/undo");
+                return;
+            }
+            GameRegistry.Game game = games.get(parts[0]);
+            if (game == null) {
+                sendText(exchange, 404, "No such game");
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (parts[1].equals("moves") && "GET".equalsIgnoreCase(method)) replay(exchange, game);
+            else if (parts[1].equals("moves") && "POST".equalsIgnoreCase(method)) playBatch(exchange, game);
+            else if (parts[1].equals("undo") && "POST".equalsIgnoreCase(method)) undo(exchange, game);
+            else sendText(exchange, 405, "Method Not Allowed");
+        }
+
+        private void playBatch(HttpExchange exchange, GameRegistry.Game game) throws IOException {
+            byte[] raw = exchange.getRequestBody().readNBytes(MAX_BODY + 1);
+            if (raw.length > MAX_BODY) {
+                sendText(exchange, 413, "Body too large");
+                return;
+            }
+            int[] moves;
+            try {
+                String body = new String(raw, StandardCharsets.UTF_8).trim();
+                JSONArray arr = body.startsWith("{") ? new JSONObject(body).getJSONArray("moves") : new JSONArray(body);
+                if (arr.length() > MAX_BATCH) {
+                    sendText(exchange, 400, "At most " + MAX_BATCH + " moves per request");
+                    return;
+                }
+                moves = new int[arr.length()];
+                for (int i = 0; i < moves.length; i++) moves[i] = arr.getInt(i);
+            } catch (JSONException e) {
+                sendText(exchange, 400, "Body must be a JSON array of cell indexes, or {\"moves\": [...]}");
+                return;
+            }
+
+            JSONObject json;
+            synchronized (game) {
+                GameEngine backend = game.getBackend();
+                JSONArray states = new JSONArray();
+                int applied = 0, played = 0;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BATCH_MILLIS);
+                for (int pos : moves) {
+                    if (played > 0 && System.nanoTime() - deadline > 0) break;
+                    played++;
+                    MoveLog log = backend.getMoveLog();
+                    int before = log.size();
+                    boolean ok = playTurn(game, pos); // refused once the game is over
+                    if (ok) applied++;
+                    int cpu = log.size() > before + 1 ? log.pos(log.size() - 1) : -1;
+                    states.put(buildBoardJson(backend).put("pos", pos).put("ok", ok).put("cpu", cpu));
+                }
+                json = buildBoardJson(backend).put("states", states).put("applied", applied)
+                        .put("remaining", moves.length - played);
+                if (applied > 0 && game.isWatched()) {
+                    byte[] full = boardEvent(BoardJson.write(backend));
+                    game.publish(full, full);
+                }
+            }
+            journalSync();
+            sendJson(exchange, json);
+        }
+
+        private void replay(HttpExchange exchange, GameRegistry.Game game) throws IOException {
+            JSONObject json = new JSONObject();
+            synchronized (game) {
+                GameEngine backend = game.getBackend();
+                MoveLog log = backend.getMoveLog();
+                JSONArray moves = new JSONArray();
+                for (int i = 0; i < log.size(); i++) moves.put(new JSONArray().put(log.pos(i)).put(String.valueOf(log.symbol(i))));
+                json.put("id", game.getId())
+                        .put("size", backend.getSize())
+                        .put("k", backend.getWinLength())
+                        .put("level", backend.getDifficulty().name().toLowerCase())
+                        .put("seed", String.valueOf(backend.getSeed())) // string: JS numbers lose bits past 2^53
+                        .put("winner", String.valueOf(backend.getWinner()))
+                        .put("moves", moves);
+            }
+            sendJson(exchange, json);
+        }
+
+        private void undo(HttpExchange exchange, GameRegistry.Game game) throws IOException {
+            int len = -1; // stays -1 when there was nothing to undo
+            synchronized (game) {
+                GameEngine backend = game.getBackend();
+                MoveLog log = backend.getMoveLog();
+                boolean undone = false, wasOver = backend.isGameOver();
+                int symbols = 0;
+                // drop the CPU reply (if any) and then the player's move before it
+                while (!undone && log.size() > 0) {
+                    undone = log.symbol(log.size() - 1) == 'X';
+                    backend.undo();
+                    symbols++;
+                }
+                if (journal != null) journal.logUndo(game, symbols);
+                if (wasOver && !backend.isGameOver()) game.unmarkRecorded();
+                if (undone) {
+                    len = BoardJson.write(backend);
+                    if (game.isWatched()) {
+                        byte[] full = boardEvent(len);
+                        game.publish(full, full);
+                    }
+                }
+            }
+            journalSync();
+            if (len < 0) {
+                sendText(exchange, 409, "Nothing to undo");
+                return;
+            }
+            sendBoardJson(exchange, len);
+        }
+    }
+
+    /** Return current board as JSON: GET /TicTacToe/board (empty board if there is no game yet) */
     static class BoardHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            sendJson(exchange, buildBoardJson());
+            GameRegistry.Game game = findGame(exchange, queryToMap(exchange.getRequestURI().getQuery()));
+            if (game == null) {
+                sendBoardJson(exchange, BoardJson.write(new BitBoardEngine()));
+                return;
+            }
+            int len;
+            synchronized (game) { len = BoardJson.write(game.getBackend()); }
+            sendBoardJson(exchange, len);
         }
     }
 
-    /** Return leaderboard plain-text (server uses DB.getLeaderboard) */
+    /**
+     * Server-Sent Events stream of one game: GET /TicTacToe/events[?gameId=...|?watch=...]
+     * - "board" event with the full state on subscribe and on newgame
+     * - "delta" event { cells: [[pos, "X"], ...], winner } after every move
+     * Works for the player (cookie) and for spectators, who use the game's watch token (X-Watch-Token
+     * from /newgame); the token opens only this stream, every endpoint that changes a game wants the id.
+     * Each event is encoded once and shared by all of the game's streams; see EventStream for slow viewers.
+     */
+    static class EventsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            String token = params.get("watch");
+            GameRegistry.Game game = token != null ? games.getByWatchToken(token) : findGame(exchange, params);
+            if (game == null) {
+                sendText(exchange, 404, "No such game");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // chunked, stays open
+            // from here on the stream belongs to the SSE writers: this request thread is free again
+            EventStream stream = new EventStream(exchange, game);
+            synchronized (game) {
+                byte[] first = boardEvent(BoardJson.write(game.getBackend()));
+                stream.offer(first, first);
+                game.watch(stream);
+            }
+            if (!games.isLive(game)) stream.close(); // evicted or replaced meanwhile, nobody would close it
+        }
+    }
+
+    /**
+     * Leaderboard:
+     * - GET /TicTacToe/leaderboard                          -> plain text top list (old format)
+     * - GET /TicTacToe/leaderboard?limit=20&offset=0[&name=] -> JSON page, plus the named player's rank
+     */
     static class LeaderboardHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            if (db == null) {
-                sendText(exchange, 200, "(no DB)");
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            boolean json = params.containsKey("limit") || params.containsKey("offset") || params.containsKey("name");
+            if (leaderboard == null) {
+                if (json) sendJson(exchange, new JSONObject().put("players", new JSONArray()));
+                else sendText(exchange, 200, "(no DB)");
                 return;
             }
-            try {
-                List<String> rows = db.getLeaderboard();
+            if (!json) {
+                List<String> rows = leaderboard.getLeaderboard();
                 String body = String.join("\n", rows.isEmpty() ? Collections.singletonList("(no records)") : rows);
                 sendText(exchange, 200, body);
+                return;
+            }
+
+            int limit, offset;
+            try {
+                limit = Math.min(MAX_PAGE, Math.max(1, Integer.parseInt(params.getOrDefault("limit", "20"))));
+                offset = Math.max(0, Integer.parseInt(params.getOrDefault("offset", "0")));
+            } catch (NumberFormatException nfe) {
+                sendText(exchange, 400, "Invalid limit/offset");
+                return;
+            }
+            JSONObject obj = new JSONObject();
+            JSONArray players = new JSONArray();
+            for (PlayerScore p : leaderboard.getLeaderboard(limit, offset)) players.put(scoreJson(p));
+            obj.put("players", players);
+            obj.put("limit", limit);
+            obj.put("offset", offset);
+            String name = params.get("name");
+            if (name != null && !name.trim().isEmpty()) {
+                PlayerScore me = leaderboard.getRank(name.trim());
+                obj.put("player", me == null ? JSONObject.NULL : scoreJson(me));
+            }
+            sendJson(exchange, obj);
+        }
+
+        private static JSONObject scoreJson(PlayerScore p) {
+            return new JSONObject().put("rank", p.rank).put("name", p.username).put("wins", p.wins);
+        }
+    }
+
+    /**
+     * Game history stats, JSON:
+     * - GET /TicTacToe/stats[?limit=20]          -> win rate of the busiest players + most played openings on 3x3
+     * - GET /TicTacToe/stats?player=alice        -> just that player's record
+     * - GET /TicTacToe/stats?size=4              -> openings of another board size
+     * Reads the games table, so the last second or so of finished games may not be in yet.
+     */
+    static class StatsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            if (db == null) {
+                sendJson(exchange, new JSONObject().put("players", new JSONArray()).put("openings", new JSONArray()));
+                return;
+            }
+            int limit, size;
+            try {
+                limit = Math.min(MAX_PAGE, Math.max(1, Integer.parseInt(params.getOrDefault("limit", "20"))));
+                size = Integer.parseInt(params.getOrDefault("size", "3"));
+            } catch (NumberFormatException nfe) {
+                sendText(exchange, 400, "Invalid limit/size");
+                return;
+            }
+            String player = playerName(params.get("player"));
+            try {
+                JSONArray players = new JSONArray();
+                for (PlayerStats p : db.getPlayerStats(player, limit)) {
+                    players.put(new JSONObject().put("name", p.player).put("games", p.games).put("wins", p.wins)
+                            .put("losses", p.losses).put("draws", p.draws).put("winRate", p.winRate()));
+                }
+                JSONObject obj = new JSONObject().put("players", players);
+                if (player == null) {
+                    JSONArray openings = new JSONArray();
+                    for (OpeningStats o : db.getOpenings(size, limit)) {
+                        openings.put(new JSONObject().put("cell", o.cell).put("games", o.games)
+                                .put("xWins", o.xWins).put("oWins", o.oWins).put("draws", o.draws));
+                    }
+                    obj.put("size", size).put("openings", openings);
+                }
+                sendJson(exchange, obj);
             } catch (SQLException e) {
                 e.printStackTrace();
                 sendText(exchange, 500, "DB error");
@@ -167,22 +685,197 @@ public class HttpServerApp {
         }
     }
 
-    /** Save a win into DB: POST/GET /TicTacToe/saveWin?name=alice */
+    /**
+     * Elo ranking (named players and the CPU levels), JSON:
+     * GET /TicTacToe/ratings?limit=20&offset=0[&name=alice] -> one page, plus the named player's rank
+     */
+    static class RatingsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            RatingService rs = ratings;
+            if (rs == null) {
+                sendJson(exchange, new JSONObject().put("players", new JSONArray()));
+                return;
+            }
+            int limit, offset;
+            try {
+                limit = Math.min(MAX_PAGE, Math.max(1, Integer.parseInt(params.getOrDefault("limit", "20"))));
+                offset = Math.max(0, Integer.parseInt(params.getOrDefault("offset", "0")));
+            } catch (NumberFormatException nfe) {
+                sendText(exchange, 400, "Invalid limit/offset");
+                return;
+            }
+            JSONArray players = new JSONArray();
+            for (PlayerRating p : rs.getPage(limit, offset)) players.put(ratingJson(p));
+            JSONObject obj = new JSONObject().put("players", players).put("limit", limit).put("offset", offset)
+                    .put("total", rs.size());
+            String name = playerName(params.get("name"));
+            if (name != null) {
+                PlayerRating me = rs.getRank(name);
+                obj.put("player", me == null ? JSONObject.NULL : ratingJson(me));
+            }
+            sendJson(exchange, obj);
+        }
+
+        private static JSONObject ratingJson(PlayerRating p) {
+            return new JSONObject().put("rank", p.rank).put("name", p.username).put("rating", Math.round(p.rating))
+                    .put("games", p.games).put("wins", p.wins).put("losses", p.losses).put("draws", p.draws);
+        }
+    }
+
+    /** Save a win: POST/GET /TicTacToe/saveWin?name=alice */
     static class SaveWinHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            if (db == null) { sendText(exchange, 500, "DB unavailable"); return; }
+            if (leaderboard == null) { sendText(exchange, 500, "DB unavailable"); return; }
             String query = exchange.getRequestURI().getQuery();
             Map<String, String> params = queryToMap(query);
             String name = params.getOrDefault("name", "player").trim();
             if (name.isEmpty()) name = "player";
+            leaderboard.addWin(name); // persisted by the next batched flush
+            sendText(exchange, 200, "OK");
+        }
+    }
+
+    /** Answers 503 + Retry-After instead of running the handler when the executor had no room for the request */
+    static class OverloadFilter extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (SHEDDING.get() == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            REJECTED.inc();
+            exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+            sendText(exchange, 503, "Server busy, try again shortly");
+        }
+
+        @Override
+        public String description() { return "sheds requests the executor could not queue"; }
+    }
+
+    /**
+     * Node-to-node calls of cluster mode (see ClusterNode, ClusterRouter):
+     * - POST /cluster/rebalance {"nodes": ["host:port", ...], "vnodes": 128}  send away the games the new ring puts elsewhere
+     * - POST /cluster/import    {"games": [...]}                              take over games from another node
+     *                                                                          ("refused": the ones over the game cap)
+     * Only for callers with the cluster secret (403 otherwise): the port is the public one.
+     * The work runs on two threads of its own: when the request pool is full the exchange arrives on the
+     * dispatcher (see newExecutor), which must not block on a game import, and a handoff should not
+     * be refused just because players keep the pool busy.
+     */
+    static class ClusterHandler implements HttpHandler {
+        private static final int MAX_BODY = 64 << 20; // one import batch of big boards
+        private final ThreadPoolExecutor workers;
+
+        ClusterHandler() {
+            AtomicInteger n = new AtomicInteger();
+            workers = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "cluster-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            workers.allowCoreThreadTimeOut(true); // no threads left behind between cluster calls
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) {
+            workers.execute(() -> {
+                try {
+                    serve(exchange);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Cluster request failed: " + e);
+                } finally {
+                    exchange.close();
+                }
+            });
+        }
+
+        private void serve(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            ClusterNode c = cluster;
+            if (c == null) {
+                sendText(exchange, 503, "Not in a cluster");
+                return;
+            }
+            if (!c.authorized(exchange)) {
+                sendText(exchange, 403, "Forbidden");
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            byte[] raw = exchange.getRequestBody().readNBytes(MAX_BODY + 1);
+            if (raw.length > MAX_BODY) {
+                sendText(exchange, 413, "Body too large");
+                return;
+            }
             try {
-                db.addWin(name);
-                sendText(exchange, 200, "OK");
-            } catch (SQLException e) {
-                e.printStackTrace();
-                sendText(exchange, 500, "DB save failed");
+                JSONObject body = new JSONObject(new String(raw, StandardCharsets.UTF_8));
+                if (path.equals("/cluster/rebalance")) {
+                    List<String> nodes = new ArrayList<>();
+                    JSONArray arr = body.getJSONArray("nodes");
+                    for (int i = 0; i < arr.length(); i++) nodes.add(arr.getString(i));
+                    sendJson(exchange, new JSONObject().put("sent", c.rebalance(new HashRing(nodes, body.getInt("vnodes")))));
+                } else if (path.equals("/cluster/import")) {
+                    sendJson(exchange, c.importGames(body));
+                } else {
+                    sendText(exchange, 404, "Use /cluster/rebalance or /cluster/import");
+                }
+            } catch (JSONException | IllegalArgumentException e) {
+                sendText(exchange, 400, "Bad cluster request: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Prometheus scrape endpoint: GET /TicTacToe/metrics */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] bytes = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) { os.write(bytes); }
+        }
+    }
+
+    /**
+     * Counts and times one endpoint (ttt_http_requests_total / ttt_http_request_duration_seconds).
+     * For /events it is the time to set the stream up (it is then written by EventStream).
+     */
+    static class TimedHandler implements HttpHandler {
+        private final String name;
+        private final HttpHandler inner;
+        private final Metrics.Histogram latency;
+        private final Metrics.Counter ok, failed;
+
+        TimedHandler(String name, HttpHandler inner) {
+            this.name = name;
+            this.inner = inner;
+            this.latency = Metrics.histogram("ttt_http_request_duration_seconds", "Handler latency", "handler", name);
+            this.ok = requests("200");
+            this.failed = requests("error");
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            try {
+                inner.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                failed.inc();
+                throw e;
+            } finally {
+                latency.observeSince(start);
             }
+            int code = exchange.getResponseCode();
+            (code == 200 ? ok : requests(String.valueOf(code))).inc();
+        }
+
+        private Metrics.Counter requests(String code) {
+            return Metrics.counter("ttt_http_requests_total", "Requests per handler and status", "handler", name, "code", code);
         }
     }
 
@@ -190,8 +883,84 @@ public class HttpServerApp {
     // Helpers: JSON builders and IO
     // -----------------------
 
-    /** Build a JSONObject { board: [...], winner: "X" or "O" or "D" or " " } */
-    private static JSONObject buildBoardJson() {
+    /**
+     * Player's move (X) and, unless that ended the game, the CPU reply (O). False if the move was refused,
+     * which includes every move after the game ended (nothing is played on). Caller holds the game's lock.
+     */
+    private static boolean playTurn(GameRegistry.Game game, int pos) {
+        GameEngine backend = game.getBackend();
+        int logged = backend.getMoveLog().size();
+        boolean ok = !backend.isGameOver() && backend.playerMove(pos);
+        if (ok && !backend.isGameOver()) {
+            long start = System.nanoTime();
+            backend.computerMove(); // server runs CPU O move
+            CPU_MOVE[backend.getDifficulty().ordinal()].observeSince(start);
+        }
+        if (ok && journal != null) journal.logMoves(game, logged);
+        if (ok && backend.isGameOver()) recordResult(game);
+        return ok;
+    }
+
+    // group commit: wait (outside the game's lock) until this request's journal records are on disk
+    private static void journalSync() {
+        GameJournal j = journal;
+        if (j != null) j.sync();
+    }
+
+    // hand a game that just ended to the ratings and the recorder (neither waits for the DB)
+    private static void recordResult(GameRegistry.Game game) {
+        if (!game.markRecorded()) return;
+        GameEngine backend = game.getBackend();
+        String cpu = "cpu:" + backend.getDifficulty().name().toLowerCase();
+        RatingService rs = ratings;
+        if (rs != null) rs.recordGame(game.getPlayer(), cpu, backend.getWinner());
+        GameRecorder r = recorder;
+        if (r == null) return;
+        MoveLog log = backend.getMoveLog();
+        int[] moves = new int[log.size()];
+        for (int i = 0; i < moves.length; i++) moves[i] = log.pos(i);
+        long now = System.currentTimeMillis();
+        r.record(new GameRecord(game.getPlayer(), cpu, backend.getWinner(), backend.getSize(), backend.getWinLength(), backend.getSeed(),
+                moves, game.getStartedAt(), now - game.getStartedAt()));
+    }
+
+    // ?player= / ?name= value as stored in the DB: trimmed, capped, null when blank
+    private static String playerName(String raw) {
+        if (raw == null || raw.trim().isEmpty()) return null;
+        String name = raw.trim();
+        return name.length() > MAX_NAME ? name.substring(0, MAX_NAME) : name;
+    }
+
+    /** Resolve the caller's game from ?gameId=... or the gameId cookie (null if none / evicted) */
+    private static GameRegistry.Game findGame(HttpExchange ex, Map<String, String> params) {
+        return games.get(gameId(ex, params));
+    }
+
+    // the id the caller asks for, ?gameId=... before the cookie; null if neither is there
+    private static String gameId(HttpExchange ex, Map<String, String> params) {
+        String id = params.get(GAME_COOKIE);
+        if (id == null) {
+            for (String header : ex.getRequestHeaders().getOrDefault("Cookie", Collections.emptyList())) {
+                for (String c : header.split(";")) {
+                    String kv = c.trim();
+                    if (kv.startsWith(GAME_COOKIE + "=")) id = kv.substring(GAME_COOKIE.length() + 1);
+                }
+            }
+        }
+        return id;
+    }
+
+    // ids are 64-bit hex numbers as Long.toHexString writes them: the journal stores them as longs
+    // and recovery prints them back, so "00ff" would come back as "ff"
+    private static boolean isGameId(String id) {
+        return id.matches("0|[1-9a-f][0-9a-f]{0,15}");
+    }
+
+    /**
+     * Build a JSONObject { board: [...], winner: "X" or "O" or "D" or " " }.
+     * Responses use BoardJson, which writes the same bytes without building objects; this stays as its reference.
+     */
+    static JSONObject buildBoardJson(GameEngine backend) {
         JSONObject obj = new JSONObject();
         JSONArray arr = new JSONArray();
         char[] b = backend.getBoard();
@@ -201,6 +970,35 @@ public class HttpServerApp {
         return obj;
     }
 
+    /** Build { cells: [[pos, "X"], ...], winner: ... } with the cells that changed since before */
+    private static JSONObject buildDeltaJson(char[] before, GameEngine backend) {
+        JSONArray cells = new JSONArray();
+        char[] b = backend.getBoard();
+        for (int i = 0; i < b.length; i++) {
+            if (b[i] != before[i]) cells.put(new JSONArray().put(i).put(String.valueOf(b[i])));
+        }
+        JSONObject obj = new JSONObject();
+        obj.put("cells", cells);
+        obj.put("winner", String.valueOf(backend.getWinner()));
+        return obj;
+    }
+
+    /** Encode one Server-Sent Event, once for all of the game's watchers */
+    private static byte[] sseEvent(String type, String data) {
+        return ("event: " + type + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // "board" event straight from the JSON BoardJson.write() just put in this thread's buffer
+    private static byte[] boardEvent(int len) {
+        byte[] head = BOARD_EVENT_HEAD;
+        byte[] ev = new byte[head.length + len + 2];
+        System.arraycopy(head, 0, ev, 0, head.length);
+        System.arraycopy(BoardJson.buffer(), 0, ev, head.length, len);
+        ev[ev.length - 2] = '\n';
+        ev[ev.length - 1] = '\n';
+        return ev;
+    }
+
     /** Send a plain text response */
     private static void sendText(HttpExchange ex, int code, String text) throws IOException {
         byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
@@ -209,8 +1007,15 @@ public class HttpServerApp {
         try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
     }
 
+    /** Send the board JSON that BoardJson.write() just put in this thread's buffer */
+    static void sendBoardJson(HttpExchange ex, int len) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, len);
+        try (OutputStream os = ex.getResponseBody()) { os.write(BoardJson.buffer(), 0, len); }
+    }
+
     /** Send a JSONObject as application/json */
-    private static void sendJson(HttpExchange ex, JSONObject json) throws IOException {
+    static void sendJson(HttpExchange ex, JSONObject json) throws IOException {
         byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
         ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         ex.sendResponseHeaders(200, bytes.length);
@@ -218,7 +1023,7 @@ public class HttpServerApp {
     }
 
     /** Parse query string like "pos=2&x=1" into a map (URL-decoded) */
-    private static Map<String, String> queryToMap(String query) {
+    static Map<String, String> queryToMap(String query) {
         Map<String, String> map = new HashMap<>();
         if (query == null || query.isEmpty()) return map;
         String[] pairs = query.split("&");
@@ -236,23 +1041,4 @@ public class HttpServerApp {
         }
         return map;
     }
-
-    /** Serves the favicon (icon shown in the browser tab) */
-    static class IconHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            File iconFile = new File("C:/Games/TicTacToeWeb/icon.ico");
-            if (!iconFile.exists()) {
-                exchange.sendResponseHeaders(404, -1);
-                return;
-            }
-
-            byte[] iconBytes = java.nio.file.Files.readAllBytes(iconFile.toPath());
-            exchange.getResponseHeaders().set("Content-Type", "image/x-icon");
-            exchange.sendResponseHeaders(200, iconBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(iconBytes);
-            }
-        }
-    }
 }
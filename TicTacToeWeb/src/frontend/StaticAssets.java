@@ -0,0 +1,203 @@
+package frontend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static files of the web UI (index.html, icon.ico) kept in memory.
+ * - Each file is read once, with its ETag and a gzip copy computed up front
+ * - Requests get Cache-Control, 304 Not Modified for a matching If-None-Match,
+ *   and the gzip bytes when the browser accepts them
+ * - A WatchService thread reloads a file when it changes on disk (-Dttt.assets.watch=false to turn off)
+ */
+public class StaticAssets {
+
+    /** One loaded file. */
+    private static final class Asset {
+        final byte[] bytes;
+        final byte[] gzip; // null when compressing doesn't pay off (e.g. the icon)
+        final String etag, gzipEtag; // the two encodings are different representations
+
+        Asset(byte[] bytes) {
+            this.bytes = bytes;
+            byte[] z = gzip(bytes);
+            this.gzip = z.length < bytes.length ? z : null;
+            String hash = hash(bytes);
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gz\"";
+        }
+    }
+
+    private final Path dir;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>(); // file name -> current bytes
+    private final Map<String, Boolean> served = new ConcurrentHashMap<>(); // file names handlers asked for
+
+    public StaticAssets(Path dir) {
+        this.dir = dir;
+        if (Boolean.parseBoolean(System.getProperty("ttt.assets.watch", "true"))) startWatcher();
+    }
+
+    public Path getDir() { return dir; }
+
+    /**
+     * Handler that serves one file of the asset directory.
+     * missing is the plain-text body sent with the 404 when the file isn't there.
+     */
+    public HttpHandler handler(String name, String contentType, String cacheControl, String missing) {
+        served.put(name, Boolean.TRUE);
+        load(name);
+        return exchange -> serve(exchange, name, contentType, cacheControl, missing);
+    }
+
+    private void serve(HttpExchange ex, String name, String contentType, String cacheControl, String missing) throws IOException {
+        String method = ex.getRequestMethod();
+        boolean head = "HEAD".equalsIgnoreCase(method);
+        if (!head && !"GET".equalsIgnoreCase(method)) {
+            reply(ex, 405, "text/plain; charset=utf-8", "Method Not Allowed".getBytes(StandardCharsets.UTF_8), false);
+            return;
+        }
+        Asset a = assets.get(name);
+        if (a == null) {
+            reply(ex, 404, "text/plain; charset=utf-8", missing.getBytes(StandardCharsets.UTF_8), head);
+            return;
+        }
+
+        boolean gz = a.gzip != null && acceptsGzip(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+        String etag = gz ? a.gzipEtag : a.etag;
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.getResponseHeaders().set("Cache-Control", cacheControl);
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (matches(ex.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        if (gz) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        reply(ex, 200, contentType, gz ? a.gzip : a.bytes, head);
+    }
+
+    private static void reply(HttpExchange ex, int code, String contentType, byte[] body, boolean head) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        if (head) {
+            ex.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            ex.sendResponseHeaders(code, -1);
+            ex.close();
+            return;
+        }
+        ex.sendResponseHeaders(code, body.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+    }
+
+    // If-None-Match: "a", W/"b", * (weak comparison, as RFC 9110 asks for GET)
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || t.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // "gzip, deflate, br" yes; "gzip;q=0" no
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] p = part.trim().split(";");
+            if (!p[0].trim().equalsIgnoreCase("gzip") && !p[0].trim().equals("*")) continue;
+            for (int i = 1; i < p.length; i++) {
+                String q = p[i].trim();
+                if (q.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(q.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // (re)read one file; a missing or unreadable file is served as 404 until it shows up again
+    private void load(String name) {
+        Path file = dir.resolve(name);
+        try {
+            assets.put(name, new Asset(Files.readAllBytes(file)));
+        } catch (NoSuchFileException e) {
+            assets.remove(name);
+        } catch (IOException e) {
+            assets.remove(name);
+            System.err.println("Could not read " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void startWatcher() {
+        WatchService watcher;
+        try {
+            watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("Not watching " + dir + " for changes: " + e.getMessage());
+            return;
+        }
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        if (!(ev.context() instanceof Path)) { // OVERFLOW: events were lost, reload everything
+                            served.keySet().forEach(this::load);
+                            continue;
+                        }
+                        String name = ((Path) ev.context()).getFileName().toString();
+                        if (served.containsKey(name)) {
+                            load(name);
+                            System.out.println("Reloaded " + name);
+                        }
+                    }
+                    if (!key.reset()) return; // directory is gone
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // shutting down
+            }
+        }, "StaticAssetWatcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream z = new GZIPOutputStream(out)) {
+            z.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't fail
+        }
+        return out.toByteArray();
+    }
+
+    // first 64 bits of the SHA-256, in hex
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) sb.append(String.format("%02x", d[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JDK ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics in Prometheus text format (GET .../metrics).
+ * Counters and histograms are built on LongAdder (striped cells), so recording on a hot
+ * path never makes threads fight over one counter; the totals are only summed on scrape.
+ * Look a metric up once and keep the reference, e.g.
+ *   private static final Metrics.Counter WINS = Metrics.counter("ttt_wins_total", "Wins saved");
+ * Labels are passed as name/value pairs: Metrics.histogram("...", "...", "call", "addWin").
+ */
+public final class Metrics {
+
+    /** Monotonic count. */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        private Counter() { }
+
+        public void inc() { value.increment(); }
+        public void add(long n) { value.add(n); }
+        public long get() { return value.sum(); }
+    }
+
+    /** Up/down value (e.g. open connections). */
+    public static final class Gauge {
+        private final LongAdder value = new LongAdder();
+
+        private Gauge() { }
+
+        public void inc() { value.increment(); }
+        public void dec() { value.decrement(); }
+        public void add(long n) { value.add(n); }
+        public long get() { return value.sum(); }
+    }
+
+    /** Latency distribution with fixed buckets from 50 us to 10 s. */
+    public static final class Histogram {
+        private static final String[] BOUNDS = {
+                "0.00005", "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01",
+                "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+        private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) BOUNDS_NANOS[i] = (long) (Double.parseDouble(BOUNDS[i]) * 1e9);
+        }
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1]; // last one is +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        /** Observe the time elapsed since startNanos (a System.nanoTime() value). */
+        public void observeSince(long startNanos) { observeNanos(System.nanoTime() - startNanos); }
+    }
+
+    // one metric name with its HELP/TYPE lines and a child per label set
+    private static final class Family {
+        final String name, help, type;
+        final Map<String, Object> children = new ConcurrentHashMap<>();
+        final List<String> order = new CopyOnWriteArrayList<>(); // label sets in creation order
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        Object child(String labels, java.util.function.Supplier<Object> create) {
+            Object c = children.get(labels);
+            if (c != null) return c;
+            synchronized (this) {
+                c = children.get(labels);
+                if (c == null) {
+                    c = create.get();
+                    children.put(labels, c);
+                    order.add(labels);
+                }
+                return c;
+            }
+        }
+    }
+
+    private static final Map<String, Family> families = new ConcurrentHashMap<>();
+    private static final List<Family> familyOrder = new CopyOnWriteArrayList<>();
+
+    private Metrics() { }
+
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").child(labels(labels), Counter::new);
+    }
+
+    public static Gauge gauge(String name, String help, String... labels) {
+        return (Gauge) family(name, help, "gauge").child(labels(labels), Gauge::new);
+    }
+
+    /** Gauge read from somewhere else at scrape time (queue sizes, map sizes...). */
+    public static void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "gauge").child(labels(labels), () -> value);
+    }
+
+    public static Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").child(labels(labels), Histogram::new);
+    }
+
+    /** Everything registered so far, in the Prometheus text exposition format (0.0.4). */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family f : familyOrder) {
+            sb.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+            for (String labels : f.order) {
+                Object m = f.children.get(labels);
+                if (m instanceof Histogram) {
+                    appendHistogram(sb, f.name, labels, (Histogram) m);
+                } else {
+                    long v = m instanceof Counter ? ((Counter) m).get()
+                            : m instanceof Gauge ? ((Gauge) m).get()
+                            : ((LongSupplier) m).getAsLong();
+                    sb.append(f.name).append(braces(labels)).append(' ').append(v).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendHistogram(StringBuilder sb, String name, String labels, Histogram h) {
+        String sep = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < h.buckets.length; i++) {
+            cumulative += h.buckets[i].sum();
+            String le = i < Histogram.BOUNDS.length ? Histogram.BOUNDS[i] : "+Inf";
+            sb.append(name).append("_bucket{").append(sep).append("le=\"").append(le).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        sb.append(name).append("_sum").append(braces(labels)).append(' ').append(h.sumNanos.sum() / 1e9).append('\n');
+        sb.append(name).append("_count").append(braces(labels)).append(' ').append(cumulative).append('\n');
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family f = families.get(name);
+        if (f == null) {
+            synchronized (families) {
+                f = families.get(name);
+                if (f == null) {
+                    f = new Family(name, help, type);
+                    families.put(name, f);
+                    familyOrder.add(f);
+                }
+            }
+        }
+        if (!f.type.equals(type)) throw new IllegalArgumentException(name + " is already a " + f.type);
+        return f;
+    }
+
+    // ("handler", "move", "code", "200") -> handler="move",code="200"
+    private static String labels(String... kv) {
+        if (kv.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < kv.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(kv[i]).append("=\"")
+                    .append(kv[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}